@@ -0,0 +1,115 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionOptions;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Verifier;
+import com.artyommameev.psfsv1unpacker.unpack.VerificationReport;
+import lombok.val;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of unpacking all resources of an archive, and of
+ * verifying the archive without unpacking it.
+ * <p>
+ * The archives range from many tiny resources to a few large ones, the
+ * {@code bytes} counter of the results is the unpacking throughput in bytes
+ * per second.
+ *
+ * @author Artyom Mameev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    /**
+     * The archive shape, as {@code entryCount x payloadSize}.
+     */
+    @Param({"4096x256", "256x262144", "4x33554432"})
+    private String archiveShape;
+
+    private Path archive;
+    private File outputDirectory;
+    private PsFsV1Unpacker unpacker;
+    private List<Resource> resources;
+    private long archivePayloadSize;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        val shape = archiveShape.split("x");
+
+        int entryCount = Integer.parseInt(shape[0]);
+        int payloadSize = Integer.parseInt(shape[1]);
+
+        archive = Files.createTempFile("extraction", ".dat");
+        outputDirectory = Files.createTempDirectory("extraction").toFile();
+
+        SyntheticArchive.write(archive, entryCount, payloadSize);
+
+        unpacker = new PsFsV1Unpacker(archive.toFile());
+        resources = unpacker.getAllResources();
+        archivePayloadSize = (long) entryCount * payloadSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        unpacker.close();
+
+        Files.deleteIfExists(archive);
+        FileUtils.deleteDirectory(outputDirectory);
+    }
+
+    @Benchmark
+    public void unpackResource(ByteCounter counter) throws IOException {
+        for (val resource : resources) {
+            unpacker.unpackResource(outputDirectory, resource);
+        }
+
+        counter.bytes += archivePayloadSize;
+    }
+
+    @Benchmark
+    public void unpackResources(ByteCounter counter) throws IOException {
+        unpacker.unpackResources(outputDirectory, resources,
+                ExtractionOptions.defaults());
+
+        counter.bytes += archivePayloadSize;
+    }
+
+    @Benchmark
+    public VerificationReport verify(ByteCounter counter) throws IOException {
+        val report = PsFsV1Verifier.verify(archive.toFile(),
+                Runtime.getRuntime().availableProcessors());
+
+        counter.bytes += archivePayloadSize;
+
+        return report;
+    }
+
+    /**
+     * Counts the unpacked bytes, JMH reports the counter as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ByteCounter {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+}
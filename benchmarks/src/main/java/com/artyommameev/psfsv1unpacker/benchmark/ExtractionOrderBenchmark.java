@@ -0,0 +1,113 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionOptions;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import lombok.val;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares unpacking resources in a random order with unpacking them in the
+ * planned order of their offsets, with nearby resources read together.
+ * <p>
+ * Both benchmarks unpack the same shuffled selection with one thread, so the
+ * difference is the access pattern only. The page cache is dropped before
+ * every iteration, so the archive is read from the disk. Dropping the page
+ * cache requires root privileges on Linux; without them a warning is
+ * printed and the results show a warm cache, where the difference is much
+ * smaller.
+ *
+ * @author Artyom Mameev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExtractionOrderBenchmark {
+
+    private static final Path DROP_CACHES = Paths.get(
+            "/proc/sys/vm/drop_caches");
+
+    /**
+     * The archive shape, as {@code entryCount x payloadSize}.
+     */
+    @Param({"16384x4096", "1024x65536"})
+    private String archiveShape;
+
+    private Path archive;
+    private File outputDirectory;
+    private PsFsV1Unpacker unpacker;
+    private List<Resource> shuffledResources;
+    private boolean warned = false;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        val shape = archiveShape.split("x");
+
+        archive = Files.createTempFile("extraction-order", ".dat");
+        outputDirectory = Files.createTempDirectory("extraction-order")
+                .toFile();
+
+        SyntheticArchive.write(archive, Integer.parseInt(shape[0]),
+                Integer.parseInt(shape[1]));
+
+        unpacker = new PsFsV1Unpacker(archive.toFile());
+
+        shuffledResources = new ArrayList<>(unpacker.getAllResources());
+        Collections.shuffle(shuffledResources, new Random(42));
+    }
+
+    @Setup(Level.Iteration)
+    public void dropPageCache() throws IOException, InterruptedException {
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+
+        try {
+            Files.write(DROP_CACHES, "1".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException | SecurityException e) {
+            if (!warned) {
+                System.err.println("The page cache cannot be dropped, " +
+                        "the results show a warm cache: " + e);
+
+                warned = true;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        unpacker.close();
+
+        Files.deleteIfExists(archive);
+        FileUtils.deleteDirectory(outputDirectory);
+    }
+
+    @Benchmark
+    public void randomOrder() throws IOException {
+        unpacker.unpackResources(outputDirectory, shuffledResources,
+                ExtractionOptions.defaults()
+                        .withThreads(1)
+                        .withOrderByOffset(false));
+    }
+
+    @Benchmark
+    public void plannedOrder() throws IOException {
+        unpacker.unpackResources(outputDirectory, shuffledResources,
+                ExtractionOptions.defaults()
+                        .withThreads(1));
+    }
+}
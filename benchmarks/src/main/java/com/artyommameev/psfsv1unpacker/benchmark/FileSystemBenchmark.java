@@ -0,0 +1,105 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1FileSystem;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import lombok.val;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the resolution of a resource name over many mounted archives.
+ * <p>
+ * The {@code scanArchives} benchmark searches the resource lists of the
+ * archives from the last to the first, as an application that opens every
+ * archive with its own {@link PsFsV1Unpacker} would, and serves as the
+ * baseline for the single lookup of the {@code fileSystem} benchmark.
+ *
+ * @author Artyom Mameev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSystemBenchmark {
+
+    private static final int ENTRY_COUNT = 10_000;
+
+    @Param({"4", "32"})
+    private int archiveCount;
+
+    private final List<Path> archives = new ArrayList<>();
+    private final List<PsFsV1Unpacker> unpackers = new ArrayList<>();
+    private final List<List<Resource>> resourceLists = new ArrayList<>();
+    private PsFsV1FileSystem fileSystem;
+
+    @Setup(Level.Trial)
+    public void mountArchives() throws IOException {
+        val files = new ArrayList<File>();
+
+        for (int i = 0; i < archiveCount; i++) {
+            val archive = Files.createTempFile("file-system", ".dat");
+
+            SyntheticArchive.write(archive, ENTRY_COUNT, 1);
+
+            archives.add(archive);
+            files.add(archive.toFile());
+
+            val unpacker = new PsFsV1Unpacker(archive.toFile());
+
+            unpackers.add(unpacker);
+            resourceLists.add(unpacker.getAllResources());
+        }
+
+        fileSystem = new PsFsV1FileSystem(files);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchives() throws IOException {
+        fileSystem.close();
+
+        for (val unpacker : unpackers) {
+            unpacker.close();
+        }
+
+        for (val archive : archives) {
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    @Benchmark
+    public Resource scanArchives() {
+        val name = randomName();
+
+        for (int i = resourceLists.size() - 1; i >= 0; i--) {
+            for (val resource : resourceLists.get(i)) {
+                if (resource.getName().equals(name)) {
+                    return resource;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Benchmark
+    public Resource fileSystem() {
+        return fileSystem.findResource(randomName());
+    }
+
+    // names that are missing in all archives are the worst case of a scan
+    private static String randomName() {
+        return String.format("file%08d.bin", ThreadLocalRandom.current()
+                .nextInt(ENTRY_COUNT * 2));
+    }
+}
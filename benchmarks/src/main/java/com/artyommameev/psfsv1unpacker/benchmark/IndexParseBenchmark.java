@@ -0,0 +1,152 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.IndexCache;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.ResourceTable;
+import lombok.Cleanup;
+import lombok.val;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to open an archive and parse its index.
+ * <p>
+ * The {@code construction} benchmark opens the archive without parsing the
+ * index, so its score is the fixed cost of opening an archive. The
+ * {@code cachedIndex} benchmark opens the archive with a primed
+ * {@link IndexCache}. The {@code firstEntry} benchmark measures the time to
+ * the first resource of {@link PsFsV1Unpacker#streamResources()}, which
+ * should not depend on the count of entries.
+ * <p>
+ * The {@code perEntryReads} benchmark reproduces the former parser, which
+ * made six unbuffered reads per index entry, and serves as the baseline for
+ * the bulk parser used by {@link PsFsV1Unpacker#getAllResources()}.
+ *
+ * @author Artyom Mameev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexParseBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int entryCount;
+
+    private Path archive;
+    private Path cacheDirectory;
+    private IndexCache indexCache;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        archive = Files.createTempFile("index-parse", ".dat");
+        cacheDirectory = Files.createTempDirectory("index-cache");
+
+        SyntheticArchive.write(archive, entryCount, 16);
+
+        indexCache = new IndexCache(cacheDirectory.toFile());
+
+        try (val unpacker = new PsFsV1Unpacker(archive.toFile(),
+                indexCache)) {
+            unpacker.getResourceTable();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        Files.deleteIfExists(archive);
+        FileUtils.deleteDirectory(cacheDirectory.toFile());
+    }
+
+    @Benchmark
+    public PsFsV1Unpacker construction() throws IOException {
+        @Cleanup val unpacker = new PsFsV1Unpacker(archive.toFile());
+
+        return unpacker;
+    }
+
+    @Benchmark
+    public List<Resource> bulkRead() throws IOException {
+        @Cleanup val unpacker = new PsFsV1Unpacker(archive.toFile());
+
+        return unpacker.getAllResources();
+    }
+
+    @Benchmark
+    public ResourceTable cachedIndex() throws IOException {
+        @Cleanup val unpacker = new PsFsV1Unpacker(archive.toFile(),
+                indexCache);
+
+        return unpacker.getResourceTable();
+    }
+
+    @Benchmark
+    public Resource firstEntry() throws IOException {
+        @Cleanup val unpacker = new PsFsV1Unpacker(archive.toFile());
+
+        return unpacker.streamResources().findFirst().orElseThrow();
+    }
+
+    @Benchmark
+    public List<Resource> perEntryReads() throws IOException {
+        @Cleanup val dataInputStream = new DataInputStream(
+                new FileInputStream(archive.toFile()));
+
+        byte[] header = new byte[8];
+        byte[] resourcesCount = new byte[4];
+        byte[] separator = new byte[4];
+        byte[] unused = new byte[26];
+
+        dataInputStream.readFully(header);
+        dataInputStream.readFully(resourcesCount);
+        dataInputStream.readFully(separator);
+
+        int count = ByteBuffer.wrap(resourcesCount)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .getInt();
+
+        val resources = new ArrayList<Resource>();
+
+        for (int i = 0; i < count; i++) {
+            byte[] nameBytes = new byte[22];
+            byte[] sizeBytes = new byte[4];
+            byte[] offsetBytes = new byte[4];
+
+            dataInputStream.readFully(nameBytes);
+            dataInputStream.readFully(unused);
+            dataInputStream.readFully(sizeBytes);
+            dataInputStream.readFully(separator);
+            dataInputStream.readFully(offsetBytes);
+            dataInputStream.readFully(separator);
+
+            val name = new String(nameBytes, StandardCharsets.UTF_8).trim();
+
+            int size = ByteBuffer.wrap(sizeBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .getInt() - 16;
+
+            int offset = ByteBuffer.wrap(offsetBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .getInt() + 16;
+
+            resources.add(new Resource(name, size, offset));
+        }
+
+        return resources;
+    }
+}
@@ -0,0 +1,93 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.unpack.NameIndex;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.ResourceTable;
+import lombok.val;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the searches over the names of an archive with one million
+ * entries.
+ * <p>
+ * The {@code build} benchmark measures the time to build the
+ * {@link NameIndex}, which is done once per archive. The {@code scan}
+ * benchmark compares every name with the query as a substring, as a filter
+ * without an index would, and serves as the baseline for the
+ * {@code search} benchmark. The {@code refine} benchmark measures the
+ * search for the next character typed into the filter.
+ *
+ * @author Artyom Mameev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameSearchBenchmark {
+
+    private static final int ENTRY_COUNT = 1_000_000;
+
+    // the names are "file00000000.bin" to "file00999999.bin"
+    @Param({"0012345", "12345", "*99.bin"})
+    private String query;
+
+    private ResourceTable resourceTable;
+    private NameIndex nameIndex;
+    private NameIndex.Result previousResult;
+
+    @Setup(Level.Trial)
+    public void createIndex() throws IOException {
+        val archive = Files.createTempFile("name-search", ".dat");
+
+        try {
+            SyntheticArchive.write(archive, ENTRY_COUNT, 1);
+
+            try (val unpacker = new PsFsV1Unpacker(archive.toFile())) {
+                resourceTable = unpacker.getResourceTable();
+                nameIndex = unpacker.getNameIndex();
+            }
+        } finally {
+            Files.deleteIfExists(archive);
+        }
+
+        previousResult = nameIndex.search(query.substring(0,
+                query.length() - 1));
+    }
+
+    @Benchmark
+    public NameIndex build() {
+        return NameIndex.build(resourceTable);
+    }
+
+    @Benchmark
+    public int scan() {
+        val lowerCaseQuery = query.toLowerCase();
+        int matches = 0;
+
+        for (int i = 0; i < resourceTable.size(); i++) {
+            if (resourceTable.getName(i).toLowerCase().contains(
+                    lowerCaseQuery)) {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+
+    @Benchmark
+    public NameIndex.Result search() {
+        return nameIndex.search(query);
+    }
+
+    @Benchmark
+    public NameIndex.Result refine() {
+        return previousResult.refine(query);
+    }
+}
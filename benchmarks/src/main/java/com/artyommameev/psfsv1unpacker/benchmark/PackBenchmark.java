@@ -0,0 +1,77 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.pack.PsFsV1Packer;
+import lombok.val;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of packing a directory of files into an archive.
+ * <p>
+ * The {@code bytes} counter of the results is the packing throughput in
+ * bytes per second.
+ *
+ * @author Artyom Mameev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PackBenchmark {
+
+    /**
+     * The directory shape, as {@code fileCount x fileSize}.
+     */
+    @Param({"4096x256", "256x262144", "4x33554432"})
+    private String directoryShape;
+
+    private Path sourceDirectory;
+    private File archive;
+    private long payloadSize;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        val shape = directoryShape.split("x");
+
+        int fileCount = Integer.parseInt(shape[0]);
+        int fileSize = Integer.parseInt(shape[1]);
+
+        sourceDirectory = Files.createTempDirectory("pack");
+        archive = Files.createTempFile("pack", ".dat").toFile();
+
+        val random = new Random(42);
+        byte[] data = new byte[fileSize];
+
+        for (int i = 0; i < fileCount; i++) {
+            random.nextBytes(data);
+
+            Files.write(sourceDirectory.resolve("file" + i), data);
+        }
+
+        payloadSize = (long) fileCount * fileSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        FileUtils.deleteDirectory(sourceDirectory.toFile());
+        Files.deleteIfExists(archive.toPath());
+    }
+
+    @Benchmark
+    public void packDirectory(ExtractionBenchmark.ByteCounter counter)
+            throws IOException {
+        new PsFsV1Packer().addDirectory(sourceDirectory.toFile())
+                .pack(archive);
+
+        counter.bytes += payloadSize;
+    }
+}
@@ -0,0 +1,81 @@
+package com.artyommameev.psfsv1unpacker.benchmark;
+
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Header;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Index;
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Generates synthetic 'PS_FS_V1' archives for the benchmarks.
+ *
+ * @author Artyom Mameev
+ */
+public final class SyntheticArchive {
+
+    private SyntheticArchive() {
+    }
+
+    /**
+     * Writes an archive with the given count of resources of the same size
+     * filled with pseudo-random data.
+     *
+     * @param path         the path of the archive.
+     * @param entryCount   the count of resources.
+     * @param payloadSize  the size of every resource.
+     * @throws IOException          if the archive cannot be written.
+     * @throws NullPointerException if the path is null.
+     */
+    public static void write(@NonNull Path path, int entryCount,
+                             int payloadSize) throws IOException {
+        @Cleanup val channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        val index = ByteBuffer.allocate(PsFsV1Header.SIZE +
+                entryCount * PsFsV1Index.ENTRY_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        index.put("PS_FS_V1".getBytes(StandardCharsets.US_ASCII));
+        index.putInt(entryCount);
+        index.putInt(0);
+
+        long dataOffset = index.capacity();
+
+        for (int i = 0; i < entryCount; i++) {
+            int entryPosition = PsFsV1Header.SIZE +
+                    i * PsFsV1Index.ENTRY_SIZE;
+
+            index.position(entryPosition);
+            index.put(String.format("file%08d.bin", i)
+                    .getBytes(StandardCharsets.US_ASCII));
+            index.putInt(entryPosition + PsFsV1Index.SIZE_POSITION,
+                    payloadSize + PsFsV1Index.USELESS_HEADER_SIZE);
+            index.putInt(entryPosition + PsFsV1Index.OFFSET_POSITION,
+                    (int) dataOffset);
+
+            dataOffset += PsFsV1Index.USELESS_HEADER_SIZE + payloadSize;
+        }
+
+        channel.write(index.clear());
+
+        val random = new Random(entryCount);
+        val payload = ByteBuffer.allocate(PsFsV1Index.USELESS_HEADER_SIZE +
+                payloadSize);
+
+        for (int i = 0; i < entryCount; i++) {
+            random.nextBytes(payload.array());
+
+            channel.write(payload.clear());
+        }
+    }
+}
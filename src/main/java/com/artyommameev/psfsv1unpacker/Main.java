@@ -1,11 +1,13 @@
 package com.artyommameev.psfsv1unpacker;
 
+import com.artyommameev.psfsv1unpacker.controller.MainController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
+import lombok.val;
 
 /**
  * The main application class.
@@ -16,6 +18,7 @@ public class Main extends Application {
 
     public static final String APP_NAME = "PS_FS_V1-unpacker";
     private static Stage stage;
+    private MainController controller;
 
     /**
      * The main entry point of the application.
@@ -44,9 +47,13 @@ public class Main extends Application {
     public void start(Stage primaryStage) throws Exception {
         stage = primaryStage;
 
-        Parent root = FXMLLoader.load(getClass().getResource(
+        val loader = new FXMLLoader(getClass().getResource(
                 "/fxml/Main.fxml"));
 
+        Parent root = loader.load();
+
+        controller = loader.getController();
+
         primaryStage.setTitle(APP_NAME);
         primaryStage.setScene(new Scene(root, 390, 465));
         primaryStage.getIcons().add(new Image(
@@ -54,4 +61,15 @@ public class Main extends Application {
                         "/icon/icon.png")));
         primaryStage.show();
     }
+
+    /**
+     * JavaFX exit point of the application. Cancels the running unpacking,
+     * so the application does not keep running after the window is closed.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
 }
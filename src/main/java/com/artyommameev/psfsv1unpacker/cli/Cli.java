@@ -0,0 +1,243 @@
+package com.artyommameev.psfsv1unpacker.cli;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionMetrics;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionOptions;
+import com.artyommameev.psfsv1unpacker.unpack.LatencyHistogram;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Verifier;
+import lombok.NonNull;
+import lombok.val;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The headless command line entry point of the application.
+ * <p>
+ * Unpacks all or glob-filtered resources from one or many archives without
+ * loading the JavaFX user interface, and prints the throughput of every
+ * archive.
+ *
+ * @author Artyom Mameev
+ */
+public class Cli {
+
+    static final int EXIT_SUCCESS = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    /**
+     * The main entry point of the command line interface.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command line interface.
+     * <p>
+     * If an archive cannot be unpacked, the error is printed and the
+     * remaining archives are still unpacked.
+     *
+     * @param args the command line arguments.
+     * @param out  the stream for the regular output.
+     * @param err  the stream for the error output.
+     * @return the exit code.
+     * @throws NullPointerException if any of the parameters is null.
+     */
+    static int run(@NonNull String[] args, @NonNull PrintStream out,
+                   @NonNull PrintStream err) {
+        CliOptions options;
+
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println();
+            err.println(CliOptions.USAGE);
+
+            return EXIT_USAGE;
+        }
+
+        if (options.isHelp()) {
+            out.println(CliOptions.USAGE);
+
+            return EXIT_SUCCESS;
+        }
+
+        int exitCode = EXIT_SUCCESS;
+
+        val outputDirectories = getOutputDirectories(options);
+
+        for (int i = 0; i < options.getArchives().size(); i++) {
+            val archive = options.getArchives().get(i);
+
+            if (options.isCheck()) {
+                try {
+                    if (!checkArchive(archive, options, out)) {
+                        exitCode = EXIT_FAILURE;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    err.println(archive + ": " + e);
+
+                    exitCode = EXIT_FAILURE;
+                }
+
+                continue;
+            }
+
+            try {
+                unpackArchive(archive, outputDirectories.get(i), options,
+                        out);
+            } catch (IOException | IllegalArgumentException e) {
+                err.println(archive + ": " + e);
+
+                exitCode = EXIT_FAILURE;
+            }
+        }
+
+        return exitCode;
+    }
+
+    private static void unpackArchive(File archive, File outputDirectory,
+                                      CliOptions options, PrintStream out)
+            throws IOException {
+        long startTime = System.nanoTime();
+
+        val metrics = new ExtractionMetrics();
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            unpacker.setExtractionListener(metrics);
+
+            val resources = new ArrayList<Resource>();
+
+            for (val resource : unpacker.getAllResources()) {
+                if (options.isIncluded(resource.getName())) {
+                    resources.add(resource);
+                }
+            }
+
+            Files.createDirectories(outputDirectory.toPath());
+
+            unpacker.unpackResources(outputDirectory, resources,
+                    ExtractionOptions.defaults()
+                            .withThreads(options.getThreads())
+                            .withSkipExisting(options.isResume())
+                            .withVerifyChecksums(options.isVerify())
+                            .withPipelineCapacity(
+                                    options.getPipelineCapacity()));
+
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+
+            out.printf("%s: %d resources, %s in %.2f s (%.1f MB/s)%n",
+                    archive, metrics.getResourcesUnpacked(),
+                    FileUtils.byteCountToDisplaySize(
+                            metrics.getBytesUnpacked()), seconds,
+                    metrics.getMegabytesPerSecond());
+
+            if (metrics.getResourcesSkipped() > 0) {
+                out.printf("  skipped: %d already unpacked resources, %s%n",
+                        metrics.getResourcesSkipped(),
+                        FileUtils.byteCountToDisplaySize(
+                                metrics.getBytesSkipped()));
+            }
+
+            if (options.isStats()) {
+                printStats(metrics, out);
+            }
+        }
+    }
+
+    private static boolean checkArchive(File archive, CliOptions options,
+                                        PrintStream out) throws IOException {
+        long startTime = System.nanoTime();
+
+        val report = PsFsV1Verifier.verify(archive, options.getThreads());
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        out.printf("%s: %s, %d entries, %s checksummed in %.2f s " +
+                        "(%.1f MB/s)%n", archive,
+                report.isValid() ? "valid" : report.getProblems().size() +
+                        " problems", report.getEntryCount(),
+                FileUtils.byteCountToDisplaySize(
+                        report.getBytesChecksummed()), seconds,
+                report.getBytesChecksummed() / 1e6 / Math.max(seconds, 1e-9));
+
+        for (val problem : report.getProblems()) {
+            out.println("  " + problem);
+        }
+
+        return report.isValid();
+    }
+
+    private static void printStats(ExtractionMetrics metrics,
+                                   PrintStream out) {
+        out.printf("  index parse: %.2f ms%n",
+                metrics.getIndexParseMillis());
+
+        printLatency("read", metrics.getReadLatency(), out);
+        printLatency("open", metrics.getOpenLatency(), out);
+        printLatency("transfer", metrics.getTransferLatency(), out);
+        printLatency("total", metrics.getTotalLatency(), out);
+    }
+
+    private static void printLatency(String phase,
+                                     LatencyHistogram histogram,
+                                     PrintStream out) {
+        out.printf("  %s latency: mean %.1f us, p50 %d us, p99 %d us, " +
+                        "max %d us%n", phase, histogram.getMean() / 1e3,
+                histogram.getPercentile(50) / 1000,
+                histogram.getPercentile(99) / 1000,
+                histogram.getMax() / 1000);
+    }
+
+    /**
+     * Returns the output directories of the archives, in the order of the
+     * archives.
+     * <p>
+     * If there are several archives, every archive is unpacked into a
+     * subdirectory named after it. Archives with the same base name, for
+     * example from different directories, get numeric suffixes in the order
+     * of the archives, so their outputs never overwrite each other, and a
+     * repeated run maps every archive to the same subdirectory. The names
+     * are compared ignoring case, because the output directory may be on a
+     * case-insensitive file system.
+     *
+     * @param options the options.
+     * @return the output directories.
+     */
+    private static List<File> getOutputDirectories(CliOptions options) {
+        if (options.getArchives().size() == 1) {
+            return List.of(options.getOutputDirectory());
+        }
+
+        val names = new HashSet<String>();
+        val directories = new ArrayList<File>();
+
+        for (val archive : options.getArchives()) {
+            val baseName = FilenameUtils.getBaseName(archive.getName());
+            String name = baseName;
+
+            for (int suffix = 2; !names.add(name.toLowerCase(Locale.ROOT));
+                 suffix++) {
+                name = baseName + "-" + suffix;
+            }
+
+            directories.add(new File(options.getOutputDirectory(), name));
+        }
+
+        return directories;
+    }
+}
@@ -0,0 +1,338 @@
+package com.artyommameev.psfsv1unpacker.cli;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Encapsulates the parsed command line options of the {@link Cli}.
+ *
+ * @author Artyom Mameev
+ */
+@Getter
+public class CliOptions {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: ps-fs-v1-unpacker [options] <archive>...",
+            "",
+            "Unpacks 'PS_FS_V1' archives. If more than one archive is given,",
+            "each archive is unpacked into a subdirectory named after it,",
+            "with a numeric suffix if several archives have the same name.",
+            "",
+            "Options:",
+            "  -o, --output <dir>      output directory (default: current)",
+            "  -i, --include <glob>    unpack only resources whose names",
+            "                          match the glob, can be repeated",
+            "  -t, --threads <count>   count of worker threads",
+            "                          (default: available processors)",
+            "  -r, --resume            skip resources whose files already",
+            "                          exist with the same size",
+            "      --verify            with --resume, also compare the",
+            "                          checksums of existing files",
+            "  -p, --pipeline <MiB>    read the archive in one thread ahead",
+            "                          of the writers, buffering at most",
+            "                          the given amount of data",
+            "  -c, --check             verify the indexes and checksum the",
+            "                          data of the archives instead of",
+            "                          unpacking them",
+            "  -s, --stats             print index parse time and latency",
+            "                          percentiles of every archive",
+            "  -h, --help              print this help");
+
+    private final List<File> archives;
+    private final File outputDirectory;
+    private final List<String> includes;
+    private final int threads;
+    private final boolean resume;
+    private final boolean verify;
+    private final boolean stats;
+    private final long pipelineCapacity;
+    private final boolean check;
+    private final boolean help;
+
+    @Getter(AccessLevel.NONE)
+    private final List<Pattern> includePatterns = new ArrayList<>();
+
+    private CliOptions(List<File> archives, File outputDirectory,
+                       List<String> includes, int threads, boolean resume,
+                       boolean verify, boolean stats, long pipelineCapacity,
+                       boolean check, boolean help) {
+        this.archives = Collections.unmodifiableList(archives);
+        this.outputDirectory = outputDirectory;
+        this.includes = Collections.unmodifiableList(includes);
+        this.threads = threads;
+        this.resume = resume;
+        this.verify = verify;
+        this.stats = stats;
+        this.pipelineCapacity = pipelineCapacity;
+        this.check = check;
+        this.help = help;
+
+        for (val include : includes) {
+            includePatterns.add(compileGlob(include));
+        }
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args the command line arguments.
+     * @return the parsed options.
+     * @throws NullPointerException     if the arguments are null.
+     * @throws IllegalArgumentException if the arguments or the include globs
+     *                                  are invalid.
+     */
+    public static CliOptions parse(@NonNull String[] args) {
+        val archives = new ArrayList<File>();
+        val includes = new ArrayList<String>();
+
+        File outputDirectory = new File(".");
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean resume = false;
+        boolean verify = false;
+        boolean stats = false;
+        long pipelineCapacity = 0;
+        boolean check = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-h":
+                case "--help":
+                    return new CliOptions(archives, outputDirectory,
+                            includes, threads, resume, verify, stats,
+                            pipelineCapacity, check, true);
+                case "-o":
+                case "--output":
+                    outputDirectory = new File(getValue(args, ++i));
+                    break;
+                case "-i":
+                case "--include":
+                    includes.add(getValue(args, ++i));
+                    break;
+                case "-t":
+                case "--threads":
+                    threads = parseThreads(getValue(args, ++i));
+                    break;
+                case "-r":
+                case "--resume":
+                    resume = true;
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                case "-p":
+                case "--pipeline":
+                    pipelineCapacity = parsePipelineCapacity(
+                            getValue(args, ++i));
+                    break;
+                case "-c":
+                case "--check":
+                    check = true;
+                    break;
+                case "-s":
+                case "--stats":
+                    stats = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-"))
+                        throw new IllegalArgumentException(
+                                "Unknown option: " + args[i]);
+
+                    archives.add(new File(args[i]));
+            }
+        }
+
+        if (archives.isEmpty())
+            throw new IllegalArgumentException("No archives are specified");
+
+        if (verify && !resume)
+            throw new IllegalArgumentException(
+                    "--verify can only be used with --resume");
+
+        return new CliOptions(archives, outputDirectory, includes, threads,
+                resume, verify, stats, pipelineCapacity, check, false);
+    }
+
+    /**
+     * Checks whether a resource should be unpacked according to the include
+     * globs. If there are no include globs, all resources are unpacked.
+     *
+     * @param resourceName the name of the resource.
+     * @return true if the resource should be unpacked.
+     * @throws NullPointerException if the resource name is null.
+     */
+    public boolean isIncluded(@NonNull String resourceName) {
+        if (includes.isEmpty()) {
+            return true;
+        }
+
+        for (val pattern : includePatterns) {
+            if (pattern.matcher(resourceName).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compiles a glob into a pattern that matches whole resource names.
+     * <p>
+     * The names are matched as strings rather than as paths, so names that
+     * are not valid paths on the platform can be matched too. The syntax is
+     * the one of the "glob" path matchers: {@code *} matches any characters
+     * except '/', {@code **} matches any characters, {@code ?} matches one
+     * character except '/', {@code [...]} matches one character of a class,
+     * which is negated by a leading '!', {@code {a,b}} matches one of the
+     * alternatives, and '\' escapes the next character.
+     *
+     * @param glob the glob.
+     * @return the compiled pattern.
+     * @throws IllegalArgumentException if the glob is invalid.
+     */
+    static Pattern compileGlob(String glob) {
+        val regex = new StringBuilder();
+        boolean inGroup = false;
+
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+
+            switch (c) {
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[':
+                    i = appendClass(glob, i, regex);
+                    break;
+                case '{':
+                    if (inGroup)
+                        throw new IllegalArgumentException(
+                                "Nested groups are not supported: " + glob);
+
+                    regex.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (!inGroup)
+                        throw new IllegalArgumentException(
+                                "Unmatched '}' in glob: " + glob);
+
+                    regex.append(')');
+                    inGroup = false;
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                case '\\':
+                    if (++i == glob.length())
+                        throw new IllegalArgumentException(
+                                "Missing escaped character in glob: " + glob);
+
+                    appendLiteral(glob.charAt(i), regex);
+                    break;
+                default:
+                    appendLiteral(c, regex);
+            }
+        }
+
+        if (inGroup)
+            throw new IllegalArgumentException("Missing '}' in glob: " + glob);
+
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static int appendClass(String glob, int start,
+                                   StringBuilder regex) {
+        int end = glob.indexOf(']', start + 1);
+
+        if (end == -1)
+            throw new IllegalArgumentException("Missing ']' in glob: " + glob);
+        if (end == start + 1)
+            throw new IllegalArgumentException("Empty class in glob: " + glob);
+
+        regex.append('[');
+
+        int i = start + 1;
+
+        if (glob.charAt(i) == '!' && end > i + 1) {
+            regex.append('^');
+            i++;
+        }
+
+        for (; i < end; i++) {
+            char c = glob.charAt(i);
+
+            // the characters that have a special meaning in regex classes
+            if (c == '\\' || c == '[' || c == '&' || c == '^') {
+                regex.append('\\');
+            }
+
+            regex.append(c);
+        }
+
+        regex.append(']');
+
+        return end;
+    }
+
+    private static void appendLiteral(char c, StringBuilder regex) {
+        if ("\\.^$|?*+()[]{}".indexOf(c) != -1) {
+            regex.append('\\');
+        }
+
+        regex.append(c);
+    }
+
+    private static String getValue(String[] args, int index) {
+        if (index >= args.length)
+            throw new IllegalArgumentException("Missing value of option: " +
+                    args[index - 1]);
+
+        return args[index];
+    }
+
+    private static int parseThreads(String value) {
+        try {
+            int threads = Integer.parseInt(value);
+
+            if (threads <= 0)
+                throw new IllegalArgumentException(
+                        "Threads cannot be <= 0");
+
+            return threads;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid threads count: " +
+                    value);
+        }
+    }
+
+    private static long parsePipelineCapacity(String value) {
+        try {
+            long megabytes = Long.parseLong(value);
+
+            if (megabytes <= 0)
+                throw new IllegalArgumentException(
+                        "Pipeline capacity cannot be <= 0");
+
+            return Math.multiplyExact(megabytes, 1024 * 1024);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "Invalid pipeline capacity: " + value);
+        }
+    }
+}
@@ -2,11 +2,18 @@ package com.artyommameev.psfsv1unpacker.controller;
 
 import com.artyommameev.psfsv1unpacker.Main;
 import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionJob;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionListener;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionMetrics;
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionOptions;
+import com.artyommameev.psfsv1unpacker.unpack.IndexCache;
+import com.artyommameev.psfsv1unpacker.unpack.NameIndex;
 import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.ResourceTable;
 import com.artyommameev.psfsv1unpacker.util.SimpleAlertCreator;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.input.MouseButton;
@@ -17,6 +24,13 @@ import lombok.val;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main JavaFX controller of the application.
@@ -25,6 +39,19 @@ import java.io.IOException;
  */
 public class MainController {
 
+    private static final long PROGRESS_UPDATE_INTERVAL =
+            TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int FIRST_PAGE_SIZE = 256;
+
+    // the parsed indexes are cached, so a known archive is opened without
+    // parsing its index again, unless the cache is disabled with
+    // -Dps-fs-v1-unpacker.index-cache=false
+    private static final String INDEX_CACHE_PROPERTY =
+            "ps-fs-v1-unpacker.index-cache";
+    private static final File INDEX_CACHE_DIRECTORY = new File(
+            System.getProperty("user.home"), ".ps-fs-v1-unpacker/index-cache");
+    private static final long INDEX_CACHE_MAX_SIZE = 256L * 1024 * 1024;
+
     @FXML
     private MenuItem openFileMenuItem;
     @FXML
@@ -42,13 +69,31 @@ public class MainController {
     @FXML
     private TextField pathTextField;
     @FXML
+    private TextField filterTextField;
+    @FXML
     private ProgressBar progressBar;
     @FXML
     private ListView<Resource> resourceListView;
 
+    private final IndexCache indexCache = createIndexCache();
+
+    // the searches run one at a time, a short query scans all names
+    private final ExecutorService filterExecutor =
+            Executors.newSingleThreadExecutor(runnable -> {
+                val thread = new Thread(runnable, "Filter");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
     private String fileName;
     private PsFsV1Unpacker psFsV1Unpacker;
-    private ObservableList<Resource> resources;
+    private ResourceListModel resources;
+    private ResourceListModel allResources;
+    private volatile NameIndex nameIndex;
+    private NameIndex.Result filterResult;
+    private volatile int filterGeneration = 0;
+    private volatile ExtractionJob extractionJob;
 
     private boolean isUnpacking = false;
 
@@ -61,11 +106,30 @@ public class MainController {
 
         pathTextField.setEditable(false);
 
+        filterTextField.textProperty().addListener(
+                (observable, oldValue, newValue) -> filter(newValue));
+
+        initCellFactory();
         initContextMenu();
 
         configureButtons(AppState.FILE_CLOSED);
     }
 
+    /**
+     * Cancels the running unpacking, if there is one, and the pending
+     * searches. The partially unpacked file is deleted by the unpacking
+     * thread.
+     */
+    public void shutdown() {
+        filterExecutor.shutdownNow();
+
+        val job = extractionJob;
+
+        if (job != null) {
+            job.cancel();
+        }
+    }
+
     @FXML
     private void openAction() {
         val resourceFile = resourceFileChooser().showOpenDialog(
@@ -82,6 +146,8 @@ public class MainController {
 
     @FXML
     private void closeFileAction() {
+        closeUnpacker();
+
         clearFileInfo();
 
         configureButtons(AppState.FILE_CLOSED);
@@ -138,6 +204,8 @@ public class MainController {
                 alert.showAndWait();
 
                 if (alert.getResult() == ButtonType.YES) {
+                    shutdown();
+
                     Platform.exit();
                 }
             });
@@ -146,6 +214,59 @@ public class MainController {
         }
     }
 
+    /**
+     * Filters the list by a query on the filter thread. A query that extends
+     * the previous one only compares the previous matches. A query that is
+     * replaced by a newer one before its search starts is dropped, and only
+     * the result of the latest query is shown.
+     */
+    private void filter(String query) {
+        val index = nameIndex;
+
+        if (index == null) {
+            return;
+        }
+
+        int generation = ++filterGeneration;
+        val previousResult = filterResult;
+
+        filterExecutor.execute(() -> {
+            if (generation != filterGeneration) {
+                return;
+            }
+
+            val result = query.isEmpty() ? null : previousResult != null ?
+                    previousResult.refine(query) : index.search(query);
+
+            Platform.runLater(() -> {
+                if (generation != filterGeneration || index != nameIndex) {
+                    return;
+                }
+
+                filterResult = result;
+                resources = result == null ? allResources :
+                        allResources.filter(result);
+
+                resourceListView.setItems(resources);
+            });
+        });
+    }
+
+    private void initCellFactory() {
+        resourceListView.setCellFactory(listView -> new ListCell<>() {
+            @Override
+            protected void updateItem(Resource item, boolean empty) {
+                super.updateItem(item, empty);
+
+                // the cached string avoids formatting the row on every
+                // update, the rows of the first page are formatted directly
+                setText(empty || item == null ? null : resources == null ?
+                        item.toString() :
+                        resources.getDisplayString(getIndex()));
+            }
+        });
+    }
+
     private void initContextMenu() {
         val contextMenu = new ContextMenu();
 
@@ -179,6 +300,7 @@ public class MainController {
                 unpackButton.setDisable(true);
                 selectAllMenuItem.setDisable(true);
                 clearSelectionMenuItem.setDisable(true);
+                filterTextField.setDisable(true);
                 break;
             case FILE_OPENED:
                 openFileMenuItem.setDisable(false);
@@ -188,6 +310,7 @@ public class MainController {
                 unpackButton.setDisable(false);
                 selectAllMenuItem.setDisable(false);
                 clearSelectionMenuItem.setDisable(false);
+                filterTextField.setDisable(nameIndex == null);
                 break;
             case UNPACKING:
                 openFileMenuItem.setDisable(true);
@@ -197,36 +320,112 @@ public class MainController {
                 unpackButton.setDisable(true);
                 selectAllMenuItem.setDisable(true);
                 clearSelectionMenuItem.setDisable(true);
+                filterTextField.setDisable(true);
                 break;
         }
     }
 
     private Runnable openFileRunnable(File selectedFile) {
         return () -> {
+            PsFsV1Unpacker unpacker = null;
+            ResourceTable table;
+            ResourceListModel items;
+
             try {
-                psFsV1Unpacker = new PsFsV1Unpacker(selectedFile);
+                // the old list is not unpacked while the new file is loaded
+                configureButtons(AppState.FILE_CLOSED);
 
-                resources = FXCollections.observableArrayList();
+                closeUnpacker();
 
-                resources.addAll(psFsV1Unpacker.getAllResources());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalArgumentException e) {
-                e.printStackTrace();
+                unpacker = new PsFsV1Unpacker(selectedFile, indexCache);
+                psFsV1Unpacker = unpacker;
+
+                // the first page is decoded lazily and shown while the whole
+                // index is loaded
+                showFirstPage(unpacker.iterateResources());
 
-                Platform.runLater(() -> SimpleAlertCreator.createErrorAlert(
-                        "Open File", "Invalid file format")
-                        .showAndWait());
+                // the index is loaded from the cache or read with one bulk
+                // read, and is not copied
+                table = unpacker.getResourceTable();
+                items = new ResourceListModel(table);
+
+                Platform.runLater(() -> {
+                    resources = items;
+                    allResources = items;
+
+                    resourceListView.setItems(items);
+                });
+            } catch (IOException | UncheckedIOException e) {
+                // the file is closed while its index is being read
+                if (unpacker != null && !unpacker.isOpen()) {
+                    return;
+                }
+
+                openFailed(unpacker, e, "Cannot read the file");
+
+                return;
+            } catch (IllegalArgumentException e) {
+                openFailed(unpacker, e, "Invalid file format");
 
                 return;
             }
 
-            Platform.runLater(() -> resourceListView.setItems(resources));
+            if (unpacker == psFsV1Unpacker) {
+                configureButtons(AppState.FILE_OPENED);
+            }
+
+            // the names are indexed after the list is shown, the filter is
+            // enabled when the index is built
+            val index = NameIndex.build(table);
 
-            configureButtons(AppState.FILE_OPENED);
+            Platform.runLater(() -> {
+                if (allResources != items) {
+                    return;
+                }
+
+                nameIndex = index;
+
+                filterTextField.setDisable(isUnpacking);
+            });
         };
     }
 
+    private void showFirstPage(Iterator<Resource> iterator) {
+        val page = new ArrayList<Resource>(FIRST_PAGE_SIZE);
+
+        while (iterator.hasNext() && page.size() < FIRST_PAGE_SIZE) {
+            page.add(iterator.next());
+        }
+
+        Platform.runLater(() -> {
+            resources = null;
+            allResources = null;
+
+            resourceListView.setItems(FXCollections.observableList(page));
+        });
+    }
+
+    /**
+     * Closes the file that could not be opened, clears the list of the
+     * previous file and shows the error.
+     */
+    private void openFailed(PsFsV1Unpacker unpacker, Exception e,
+                            String message) {
+        e.printStackTrace();
+
+        // the state belongs to another file if it has been opened since
+        if (unpacker == psFsV1Unpacker) {
+            closeUnpacker();
+
+            clearFileInfo();
+
+            configureButtons(AppState.FILE_CLOSED);
+        }
+
+        Platform.runLater(() -> SimpleAlertCreator.createErrorAlert(
+                "Open File", message).showAndWait());
+    }
+
     private Runnable unpackRunnable(File unpackDirectory) {
         return () -> {
             try {
@@ -234,14 +433,38 @@ public class MainController {
 
                 initProgressBar();
 
-                val selectedResources = resourceListView
-                        .getSelectionModel().getSelectedItems();
+                val items = resources;
+                val selectedResources = new ArrayList<Resource>();
+
+                long totalBytes = 0;
 
-                for (int i = 0; i < selectedResources.size(); i++) {
-                    psFsV1Unpacker.unpackResource(unpackDirectory,
-                            selectedResources.get(i));
+                // the indices avoid creating the selected items twice
+                for (int index : new ArrayList<>(resourceListView
+                        .getSelectionModel().getSelectedIndices())) {
+                    selectedResources.add(items.get(index));
 
-                    updateProgressBar(i, selectedResources.size());
+                    totalBytes += items.getSize(index);
+                }
+
+                val metrics = new ExtractionMetrics();
+                val progressTimer = new ProgressTimer(metrics,
+                        selectedResources.size(), totalBytes);
+
+                psFsV1Unpacker.setExtractionListener(metrics);
+
+                Platform.runLater(progressTimer::start);
+
+                extractionJob = psFsV1Unpacker.createExtractionJob(
+                        unpackDirectory, selectedResources,
+                        ExtractionOptions.defaults());
+
+                try {
+                    extractionJob.run();
+                } finally {
+                    psFsV1Unpacker.setExtractionListener(
+                            ExtractionListener.NONE);
+
+                    Platform.runLater(progressTimer::stop);
                 }
 
                 isUnpacking = false;
@@ -257,23 +480,40 @@ public class MainController {
 
                     setWindowTitle(Main.APP_NAME + " - " + fileName);
                 });
+            } catch (InterruptedIOException e) {
+                // the unpacking is cancelled because the application exits
+                if (!extractionJob.isCancelled()) {
+                    throw new RuntimeException(e);
+                }
             } catch (IOException e) {
                 throw new RuntimeException(e);
+            } finally {
+                extractionJob = null;
             }
         };
     }
 
-    private void updateProgressBar(int iteration, int size) {
-        float progress = (float) iteration / size;
+    private void closeUnpacker() {
+        if (psFsV1Unpacker == null) {
+            return;
+        }
 
-        Platform.runLater(() -> {
-            if (progress >= 0.01) {
-                progressBar.setProgress(progress);
+        try {
+            psFsV1Unpacker.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-                setWindowTitle(Main.APP_NAME + " - " + "Unpacking: " +
-                        progress * 100 + "%");
-            }
-        });
+        psFsV1Unpacker = null;
+    }
+
+    private static IndexCache createIndexCache() {
+        if (!Boolean.parseBoolean(System.getProperty(INDEX_CACHE_PROPERTY,
+                "true"))) {
+            return null;
+        }
+
+        return new IndexCache(INDEX_CACHE_DIRECTORY, INDEX_CACHE_MAX_SIZE);
     }
 
     private FileChooser resourceFileChooser() {
@@ -294,6 +534,8 @@ public class MainController {
         Platform.runLater(() -> {
             pathTextField.setText(String.valueOf(resourceFile));
 
+            clearFilter();
+
             fileName = resourceFile.getName();
 
             setWindowTitle(Main.APP_NAME + " - " + fileName);
@@ -304,10 +546,23 @@ public class MainController {
         Platform.runLater(() -> {
             pathTextField.setText("File Path");
 
-            resourceListView.getItems().clear();
+            clearFilter();
+
+            resources = null;
+            allResources = null;
+
+            resourceListView.setItems(FXCollections.emptyObservableList());
         });
     }
 
+    private void clearFilter() {
+        nameIndex = null;
+        filterResult = null;
+
+        filterTextField.setText("");
+        filterTextField.setDisable(true);
+    }
+
     private void initProgressBar() {
         Platform.runLater(() -> {
             progressBar.setProgress(-1.0);
@@ -320,4 +575,58 @@ public class MainController {
     }
 
     private enum AppState {FILE_CLOSED, UNPACKING, FILE_OPENED}
+
+    /**
+     * Publishes the unpacking progress on the JavaFX application thread at
+     * most once per {@link #PROGRESS_UPDATE_INTERVAL}, however many resources
+     * are unpacked in the meantime.
+     * <p>
+     * The progress is weighted by the sizes of the resources, so it advances
+     * evenly when resources of very different sizes are unpacked.
+     */
+    private class ProgressTimer extends AnimationTimer {
+
+        private final ExtractionMetrics metrics;
+        private final int resourceCount;
+        private final long totalBytes;
+        private long lastUpdate = 0;
+        private String lastTitle;
+
+        private ProgressTimer(ExtractionMetrics metrics, int resourceCount,
+                              long totalBytes) {
+            this.metrics = metrics;
+            this.resourceCount = resourceCount;
+            this.totalBytes = totalBytes;
+        }
+
+        @Override
+        public void handle(long now) {
+            if (now - lastUpdate < PROGRESS_UPDATE_INTERVAL) {
+                return;
+            }
+
+            lastUpdate = now;
+
+            // resources of zero size are unpacked without a byte progress
+            double progress = totalBytes > 0 ?
+                    (double) metrics.getBytesUnpacked() / totalBytes :
+                    (double) metrics.getResourcesUnpacked() / resourceCount;
+
+            if (progress < 0.01) {
+                return;
+            }
+
+            progressBar.setProgress(progress);
+
+            val title = String.format("%s - Unpacking: %d%% (%.1f MB/s)",
+                    Main.APP_NAME, (int) (progress * 100),
+                    metrics.getRecentMegabytesPerSecond());
+
+            if (!title.equals(lastTitle)) {
+                Main.getPrimaryStage().setTitle(title);
+
+                lastTitle = title;
+            }
+        }
+    }
 }
\ No newline at end of file
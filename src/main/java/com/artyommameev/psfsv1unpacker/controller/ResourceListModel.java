@@ -0,0 +1,123 @@
+package com.artyommameev.psfsv1unpacker.controller;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.NameIndex;
+import com.artyommameev.psfsv1unpacker.unpack.ResourceTable;
+import javafx.collections.ObservableListBase;
+import lombok.NonNull;
+import org.apache.commons.io.FileUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable observable list of the {@link Resource}s of an archive,
+ * which is backed directly by the {@link ResourceTable} of the archive.
+ * <p>
+ * The list does not copy the table: the {@link Resource}s are created on
+ * access, and a {@link javafx.scene.control.ListView} accesses only the
+ * visible rows. The display strings of the rows are cached in a small
+ * least recently used cache, so scrolling back and forth does not format
+ * the names and the sizes again. The memory of the list therefore depends
+ * on the count of visible rows rather than on the size of the archive.
+ * <p>
+ * A list filtered by a {@link NameIndex.Result} shows only the found
+ * resources and shares the cache with the list it is created from.
+ *
+ * @author Artyom Mameev
+ */
+class ResourceListModel extends ObservableListBase<Resource>
+        implements RandomAccess {
+
+    static final int DISPLAY_CACHE_SIZE = 4096;
+
+    private final ResourceTable resourceTable;
+    private final NameIndex.Result filterResult;
+
+    // the strings are cached by the indexes in the table
+    private final Map<Integer, String> displayStrings;
+
+    /**
+     * Instantiates a new ResourceListModel.
+     *
+     * @param resourceTable the table of the resources.
+     * @throws NullPointerException if the table is null.
+     */
+    ResourceListModel(@NonNull ResourceTable resourceTable) {
+        this(resourceTable, null, new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, String> eldest) {
+                return size() > DISPLAY_CACHE_SIZE;
+            }
+        });
+    }
+
+    private ResourceListModel(ResourceTable resourceTable,
+                              NameIndex.Result filterResult,
+                              Map<Integer, String> displayStrings) {
+        this.resourceTable = resourceTable;
+        this.filterResult = filterResult;
+        this.displayStrings = displayStrings;
+    }
+
+    /**
+     * Returns a list of the resources found by a name query, which shares
+     * the cache of the display strings with this list.
+     *
+     * @param filterResult the result of a query over the names of the
+     *                     table of this list.
+     * @return the list of the found resources.
+     * @throws NullPointerException if the result is null.
+     */
+    ResourceListModel filter(@NonNull NameIndex.Result filterResult) {
+        return new ResourceListModel(resourceTable, filterResult,
+                displayStrings);
+    }
+
+    @Override
+    public Resource get(int index) {
+        return resourceTable.get(getTableIndex(index));
+    }
+
+    @Override
+    public int size() {
+        return filterResult != null ? filterResult.size() :
+                resourceTable.size();
+    }
+
+    /**
+     * Returns the size of a resource without creating the {@link Resource}.
+     *
+     * @param index the index of the resource.
+     * @return the size of the resource.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    int getSize(int index) {
+        return resourceTable.getSize(getTableIndex(index));
+    }
+
+    /**
+     * Returns the text of a row in the same format as
+     * {@link Resource#toString()}.
+     *
+     * @param index the index of the resource.
+     * @return the display string of the resource.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    String getDisplayString(int index) {
+        return displayStrings.computeIfAbsent(getTableIndex(index), i ->
+                resourceTable.getName(i) + " (" +
+                        FileUtils.byteCountToDisplaySize(
+                                resourceTable.getSize(i)) + ")");
+    }
+
+    private int getTableIndex(int index) {
+        if (filterResult == null) {
+            return index;
+        }
+
+        return filterResult.getTableIndex(index);
+    }
+}
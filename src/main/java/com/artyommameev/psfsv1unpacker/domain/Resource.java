@@ -1,13 +1,18 @@
 package com.artyommameev.psfsv1unpacker.domain;
 
+import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import org.apache.commons.io.FileUtils;
 
 /**
  * Encapsulates an archived resource file.
+ * <p>
+ * Resources are values: two resources with the same name, size and offset
+ * are equal.
  *
  * @author Artyom Mameev
  */
+@EqualsAndHashCode
 public class Resource {
 
     private final String name;
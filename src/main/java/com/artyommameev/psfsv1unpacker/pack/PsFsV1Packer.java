@@ -0,0 +1,373 @@
+package com.artyommameev.psfsv1unpacker.pack;
+
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Header;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Index;
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes 'PS_FS_V1' archives in the layout that
+ * {@link com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker} parses.
+ * <p>
+ * The archive has the following layout:
+ * <pre>
+ * 16 bytes            header ("PS_FS_V1", resources count, separator)
+ * 64 bytes * count    index entries (name, unused, size, offset)
+ * 16 bytes + size     every resource, preceded by an empty resource header
+ * </pre>
+ * The resources are added with the {@code add...} methods and written by
+ * {@link #pack(File)} in the order in which they are added. Files are
+ * streamed through one fixed staging buffer and in-memory data is written
+ * without copying, both with gathering writes of many resources at once, so
+ * packing thousands of small resources takes a few system calls.
+ * <p>
+ * The packer is not safe for use by multiple threads.
+ *
+ * @author Artyom Mameev
+ */
+public class PsFsV1Packer {
+
+    // the size of the staging buffer of the files and of one gathering write
+    static final int STAGING_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    // the maximum count of buffers of one gathering write, which is the
+    // smallest IOV_MAX of the common platforms
+    static final int MAX_GATHERED_BUFFERS = 1024;
+
+    private static final byte[] SIGNATURE = "PS_FS_V1".getBytes(
+            StandardCharsets.US_ASCII);
+
+    private final List<Input> inputs = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+
+    /**
+     * Adds a file as a resource.
+     * <p>
+     * The file is read when the archive is packed, so it must not be
+     * modified until then.
+     *
+     * @param name the name of the resource.
+     * @param file the file with the resource data.
+     * @return this packer.
+     * @throws NullPointerException     if any of the parameters is null.
+     * @throws IllegalArgumentException if the name is invalid or is already
+     *                                  added.
+     */
+    public PsFsV1Packer addFile(@NonNull String name, @NonNull File file) {
+        return add(new Input(encodeName(name), file.toPath(), null));
+    }
+
+    /**
+     * Adds in-memory data as a resource.
+     * <p>
+     * The data from its position to its limit is written without copying,
+     * so it must not be modified until the archive is packed. The position
+     * of the buffer is not changed.
+     *
+     * @param name the name of the resource.
+     * @param data the resource data.
+     * @return this packer.
+     * @throws NullPointerException     if any of the parameters is null.
+     * @throws IllegalArgumentException if the name is invalid or is already
+     *                                  added, or if the data is empty.
+     */
+    public PsFsV1Packer addData(@NonNull String name, @NonNull ByteBuffer data) {
+        if (!data.hasRemaining())
+            throw new IllegalArgumentException("Size cannot be <= 0");
+
+        return add(new Input(encodeName(name), null,
+                data.asReadOnlyBuffer()));
+    }
+
+    /**
+     * Adds all regular files of a directory as resources named after the
+     * files, in the order of their names. Subdirectories are not added.
+     *
+     * @param directory the directory with the resource files.
+     * @return this packer.
+     * @throws NullPointerException     if the directory is null.
+     * @throws IllegalArgumentException if a file name is not a valid
+     *                                  resource name or is already added.
+     * @throws IOException              if the directory cannot be listed.
+     */
+    public PsFsV1Packer addDirectory(@NonNull File directory)
+            throws IOException {
+        List<Path> files;
+
+        try (val stream = Files.list(directory.toPath())) {
+            files = stream.filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        for (val file : files) {
+            addFile(file.getFileName().toString(), file.toFile());
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the count of added resources.
+     *
+     * @return the count of added resources.
+     */
+    public int getResourceCount() {
+        return inputs.size();
+    }
+
+    /**
+     * Writes the archive with all added resources, replacing the target
+     * file.
+     * <p>
+     * The target file is extended to its final size before the data is
+     * written. If the packing fails, the partially written file is deleted.
+     *
+     * @param target the archive file to write.
+     * @throws NullPointerException if the target is null.
+     * @throws IOException          if an added file cannot be read, if an
+     *                              added file is empty, or if the archive
+     *                              would be larger than the format allows.
+     */
+    public void pack(@NonNull File target) throws IOException {
+        long[] sizes = new long[inputs.size()];
+
+        long dataOffset = PsFsV1Header.SIZE +
+                (long) PsFsV1Index.ENTRY_SIZE * inputs.size();
+        long archiveSize = dataOffset;
+
+        for (int i = 0; i < inputs.size(); i++) {
+            sizes[i] = inputs.get(i).getSize();
+
+            if (sizes[i] <= 0)
+                throw new IOException("File is empty: " +
+                        inputs.get(i).file);
+
+            archiveSize += PsFsV1Index.USELESS_HEADER_SIZE + sizes[i];
+
+            // the resource offsets and sizes are stored as signed ints
+            if (archiveSize > Integer.MAX_VALUE)
+                throw new IOException("Archive is too large");
+        }
+
+        val path = target.toPath();
+
+        try {
+            @Cleanup val channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            if (archiveSize > dataOffset) {
+                // Java has no portable fallocate, writing the last byte sets
+                // the final length, so the writes never grow the file
+                channel.write(ByteBuffer.allocate(1), archiveSize - 1);
+            }
+
+            writeFully(channel, createIndex(sizes, dataOffset), 0);
+
+            channel.position(dataOffset);
+
+            writeResources(channel, sizes);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException deleteException) {
+                e.addSuppressed(deleteException);
+            }
+
+            throw e;
+        }
+    }
+
+    private PsFsV1Packer add(Input input) {
+        val name = new String(input.name, StandardCharsets.UTF_8);
+
+        if (!names.add(name))
+            throw new IllegalArgumentException("Name is already added: " +
+                    name);
+
+        inputs.add(input);
+
+        return this;
+    }
+
+    private ByteBuffer createIndex(long[] sizes, long dataOffset) {
+        val index = ByteBuffer.allocate(PsFsV1Header.SIZE +
+                PsFsV1Index.ENTRY_SIZE * inputs.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        index.put(SIGNATURE);
+        index.putInt(inputs.size());
+
+        long offset = dataOffset;
+
+        for (int i = 0; i < inputs.size(); i++) {
+            putEntry(index, PsFsV1Header.SIZE + i * PsFsV1Index.ENTRY_SIZE,
+                    inputs.get(i).name, (int) sizes[i], offset);
+
+            offset += PsFsV1Index.USELESS_HEADER_SIZE + sizes[i];
+        }
+
+        return index.clear();
+    }
+
+    private void writeResources(FileChannel channel, long[] sizes)
+            throws IOException {
+        val resourceHeader = ByteBuffer.allocateDirect(
+                PsFsV1Index.USELESS_HEADER_SIZE);
+        val staging = ByteBuffer.allocateDirect(STAGING_BUFFER_SIZE);
+        val gathered = new ArrayList<ByteBuffer>();
+
+        for (int i = 0; i < inputs.size(); i++) {
+            val input = inputs.get(i);
+
+            if (gathered.size() + 2 > MAX_GATHERED_BUFFERS) {
+                flush(channel, gathered, staging);
+            }
+
+            gathered.add(resourceHeader.duplicate());
+
+            if (input.data != null) {
+                gathered.add(input.data.duplicate());
+
+                continue;
+            }
+
+            @Cleanup val inputChannel = FileChannel.open(input.file,
+                    StandardOpenOption.READ);
+
+            for (long position = 0; position < sizes[i]; ) {
+                if (!staging.hasRemaining() ||
+                        gathered.size() + 1 > MAX_GATHERED_BUFFERS) {
+                    flush(channel, gathered, staging);
+                }
+
+                val chunk = staging.slice();
+                chunk.limit((int) Math.min(chunk.limit(),
+                        sizes[i] - position));
+
+                while (chunk.hasRemaining()) {
+                    int read = inputChannel.read(chunk,
+                            position + chunk.position());
+
+                    if (read == -1)
+                        throw new EOFException("End of file is reached.");
+                }
+
+                gathered.add(chunk.flip());
+
+                staging.position(staging.position() + chunk.limit());
+                position += chunk.limit();
+            }
+        }
+
+        flush(channel, gathered, staging);
+    }
+
+    private void flush(FileChannel channel, List<ByteBuffer> gathered,
+                       ByteBuffer staging) throws IOException {
+        val buffers = gathered.toArray(new ByteBuffer[0]);
+
+        for (int first = 0; first < buffers.length; ) {
+            channel.write(buffers, first, buffers.length - first);
+
+            while (first < buffers.length && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+
+        gathered.clear();
+        staging.clear();
+    }
+
+    /**
+     * Writes an index entry into a buffer.
+     *
+     * @param index          the buffer with the index.
+     * @param entryPosition  the absolute position of the entry in the buffer.
+     * @param name           the encoded name of the resource.
+     * @param size           the size of the resource data.
+     * @param resourceOffset the offset of the resource header in the
+     *                       archive.
+     */
+    static void putEntry(ByteBuffer index, int entryPosition, byte[] name,
+                         int size, long resourceOffset) {
+        index.order(ByteOrder.LITTLE_ENDIAN);
+
+        index.position(entryPosition).put(name);
+
+        // the stored size and offset include the resource header
+        index.putInt(entryPosition + PsFsV1Index.SIZE_POSITION,
+                size + PsFsV1Index.USELESS_HEADER_SIZE);
+        index.putInt(entryPosition + PsFsV1Index.OFFSET_POSITION,
+                (int) resourceOffset);
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer,
+                                   long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Encodes a resource name into the bytes stored in the index.
+     *
+     * @param name the name of the resource.
+     * @return the UTF-8 bytes of the name.
+     * @throws IllegalArgumentException if the name is empty, longer than
+     *                                  the name field, or would be trimmed by
+     *                                  the unpacker.
+     */
+    static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length == 0)
+            throw new IllegalArgumentException("Name cannot be empty");
+        if (bytes.length > PsFsV1Index.NAME_SIZE)
+            throw new IllegalArgumentException("Name is longer than " +
+                    PsFsV1Index.NAME_SIZE + " bytes: " + name);
+
+        // the unpacker trims the names, so such names would not round-trip
+        if ((bytes[0] & 0xFF) <= ' ' ||
+                (bytes[bytes.length - 1] & 0xFF) <= ' ')
+            throw new IllegalArgumentException(
+                    "Name cannot start or end with whitespace: " + name);
+
+        return bytes;
+    }
+
+    private static class Input {
+
+        private final byte[] name;
+        private final Path file;
+        private final ByteBuffer data;
+
+        private Input(byte[] name, Path file, ByteBuffer data) {
+            this.name = name;
+            this.file = file;
+            this.data = data;
+        }
+
+        private long getSize() throws IOException {
+            return data != null ? data.remaining() : Files.size(file);
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.artyommameev.psfsv1unpacker.pack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Header;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Index;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modifies 'PS_FS_V1' archives in place, without rewriting them.
+ * <p>
+ * Every operation writes only the affected data, the affected 64-byte index
+ * entries and the resources count of the header:
+ * <ul>
+ * <li>{@link #replace} writes the new data over the old data if it fits
+ * into the space up to the next resource, otherwise it appends the data at
+ * the end of the file and points the entry to it.</li>
+ * <li>{@link #append} adds an entry at the end of the index and appends the
+ * data at the end of the file. If the data of other resources occupies the
+ * space of the new index entry, that data is moved to the end of the file
+ * first.</li>
+ * <li>{@link #remove} moves the last index entry into the slot of the
+ * removed one and decrements the resources count, so the format needs no
+ * tombstone marker. The order of the entries is therefore not preserved.
+ * </li>
+ * </ul>
+ * The data is always written before the index entry that points to it. The
+ * space of the replaced and removed data stays in the file until the
+ * archive is compacted with {@link #compact(File)}.
+ * <p>
+ * The archive must not be read by other instances while it is patched. The
+ * patcher is not safe for use by multiple threads.
+ *
+ * @author Artyom Mameev
+ */
+public class PsFsV1Patcher implements Closeable {
+
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+    private static final int COMPACT_CHUNK_ENTRIES = 4096;
+
+    private final FileChannel channel;
+    private final List<Resource> resources;
+    private final Map<String, Integer> firstIndexes = new HashMap<>();
+
+    /**
+     * Opens an archive for patching and reads its index.
+     *
+     * @param archive the 'PS_FS_V1' archive.
+     * @throws NullPointerException     if the archive is null.
+     * @throws IllegalArgumentException if the file has a wrong header, or if
+     *                                  an index entry is invalid.
+     * @throws IOException              if the file is corrupted.
+     */
+    public PsFsV1Patcher(@NonNull File archive) throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            resources = new ArrayList<>(unpacker.getAllResources());
+        }
+
+        for (int i = 0; i < resources.size(); i++) {
+            firstIndexes.putIfAbsent(resources.get(i).getName(), i);
+        }
+
+        channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Returns all {@link Resource}s of the patched archive.
+     *
+     * @return the unmodifiable list of the current {@link Resource}s, in the
+     * order of the index.
+     */
+    public List<Resource> getAllResources() {
+        return List.copyOf(resources);
+    }
+
+    /**
+     * Replaces the data of the first resource with the given name.
+     * <p>
+     * The position of the data is not changed. The data is not modified.
+     *
+     * @param name the name of the resource.
+     * @param data the new data of the resource.
+     * @throws NullPointerException     if any of the parameters is null.
+     * @throws IllegalArgumentException if there is no resource with the name,
+     *                                  or if the data is empty.
+     * @throws IOException              if the archive cannot be written, or
+     *                                  if it would be larger than the format
+     *                                  allows.
+     */
+    public void replace(@NonNull String name, @NonNull ByteBuffer data)
+            throws IOException {
+        int index = getIndex(name);
+
+        if (!data.hasRemaining())
+            throw new IllegalArgumentException("Size cannot be <= 0");
+
+        val resource = resources.get(index);
+        int size = data.remaining();
+
+        if (canWriteInPlace(index, size)) {
+            PsFsV1Packer.writeFully(channel, data.duplicate(),
+                    resource.getOffset());
+
+            writeEntryLocation(index, size, getStart(resource));
+        } else {
+            writeEntryLocation(index, size, appendData(data.duplicate(),
+                    getIndexEnd()));
+        }
+    }
+
+    /**
+     * Adds a resource at the end of the index.
+     * <p>
+     * The position of the data is not changed. The data is not modified.
+     *
+     * @param name the name of the resource.
+     * @param data the data of the resource.
+     * @throws NullPointerException     if any of the parameters is null.
+     * @throws IllegalArgumentException if the name is invalid or already
+     *                                  exists, or if the data is empty.
+     * @throws IOException              if the archive cannot be written, or
+     *                                  if it would be larger than the format
+     *                                  allows.
+     */
+    public void append(@NonNull String name, @NonNull ByteBuffer data)
+            throws IOException {
+        byte[] encodedName = PsFsV1Packer.encodeName(name);
+
+        if (firstIndexes.containsKey(name))
+            throw new IllegalArgumentException("Name already exists: " +
+                    name);
+        if (!data.hasRemaining())
+            throw new IllegalArgumentException("Size cannot be <= 0");
+
+        long entryStart = getIndexEnd();
+
+        // the data in the space of the new entry is moved out of the way
+        for (int i = 0; i < resources.size(); i++) {
+            if (intersects(resources.get(i), entryStart,
+                    entryStart + PsFsV1Index.ENTRY_SIZE)) {
+                relocate(i);
+            }
+        }
+
+        // the data must not be written into the space of the new entry
+        long resourceOffset = appendData(data.duplicate(),
+                entryStart + PsFsV1Index.ENTRY_SIZE);
+
+        val entry = ByteBuffer.allocate(PsFsV1Index.ENTRY_SIZE);
+        PsFsV1Packer.putEntry(entry, 0, encodedName, data.remaining(),
+                resourceOffset);
+
+        PsFsV1Packer.writeFully(channel, entry.clear(), entryStart);
+
+        resources.add(new Resource(name, data.remaining(),
+                (int) resourceOffset + PsFsV1Index.USELESS_HEADER_SIZE));
+        firstIndexes.put(name, resources.size() - 1);
+
+        writeCount();
+    }
+
+    /**
+     * Removes the first resource with the given name.
+     * <p>
+     * The last index entry is moved into the slot of the removed resource.
+     *
+     * @param name the name of the resource.
+     * @throws NullPointerException     if the name is null.
+     * @throws IllegalArgumentException if there is no resource with the
+     *                                  name.
+     * @throws IOException              if the archive cannot be written.
+     */
+    public void remove(@NonNull String name) throws IOException {
+        int index = getIndex(name);
+        int last = resources.size() - 1;
+
+        if (index != last) {
+            val entry = ByteBuffer.allocate(PsFsV1Index.ENTRY_SIZE);
+
+            readFully(entry, getEntryPosition(last));
+            PsFsV1Packer.writeFully(channel, entry.flip(),
+                    getEntryPosition(index));
+        }
+
+        val moved = resources.remove(last);
+
+        // the count is written last, so the moved entry is never lost
+        writeCount();
+
+        firstIndexes.remove(name);
+
+        if (index != last) {
+            resources.set(index, moved);
+
+            firstIndexes.computeIfPresent(moved.getName(), (movedName,
+                                                           first) ->
+                    first == last ? index : Math.min(first, index));
+        }
+
+        // the next resource with the same name becomes visible
+        for (int i = 0; i < resources.size(); i++) {
+            if (resources.get(i).getName().equals(name)) {
+                firstIndexes.put(name, i);
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the count of bytes in the data area of the archive that do not
+     * belong to any resource, such as the space of replaced and removed
+     * resources, which is reclaimed by {@link #compact(File)}.
+     *
+     * @return the count of unused bytes.
+     * @throws IOException if the size of the archive cannot be read.
+     */
+    public long getUnusedBytes() throws IOException {
+        val sorted = new ArrayList<>(resources);
+        sorted.sort(Comparator.comparingInt(Resource::getOffset));
+
+        long used = 0;
+        long usedEnd = getIndexEnd();
+
+        for (val resource : sorted) {
+            long start = Math.max(usedEnd, getStart(resource));
+            long end = getEnd(resource);
+
+            if (end > start) {
+                used += end - start;
+                usedEnd = end;
+            }
+        }
+
+        return channel.size() - getIndexEnd() - used;
+    }
+
+    /**
+     * Closes the archive.
+     *
+     * @throws IOException if the archive cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Rewrites an archive without the unused space, preserving the order of
+     * the index entries and of the resource data.
+     * <p>
+     * The header, the index entries and the resources with their headers
+     * are copied unchanged, only the offsets in the index entries are
+     * rewritten, so compacting an archive without unused space produces the
+     * same bytes. Resources that share data keep sharing it.
+     * <p>
+     * The compacted archive is written to a temporary file next to the
+     * archive, which then replaces the archive, so the archive stays intact
+     * if the compaction fails.
+     *
+     * @param archive the 'PS_FS_V1' archive.
+     * @throws NullPointerException     if the archive is null.
+     * @throws IllegalArgumentException if the file has a wrong header, or if
+     *                                  an index entry is invalid.
+     * @throws IOException              if the file is corrupted.
+     */
+    public static void compact(@NonNull File archive) throws IOException {
+        val path = archive.getAbsoluteFile().toPath();
+        val tempFile = Files.createTempFile(path.getParent(), "compact",
+                ".tmp");
+
+        try {
+            try (val patcher = new PsFsV1Patcher(archive);
+                 val target = FileChannel.open(tempFile,
+                         StandardOpenOption.WRITE)) {
+                patcher.compactTo(target);
+            }
+
+            try {
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, path,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void compactTo(FileChannel target) throws IOException {
+        val sorted = new ArrayList<Integer>(resources.size());
+
+        for (int i = 0; i < resources.size(); i++) {
+            sorted.add(i);
+        }
+
+        sorted.sort(Comparator.comparingInt(i ->
+                resources.get(i).getOffset()));
+
+        val buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        long[] newOffsets = new long[resources.size()];
+
+        // overlapping resources are copied as one range, so that the
+        // resources which share data keep sharing it
+        long rangeStart = 0;
+        long rangeEnd = 0;
+        long position = getIndexEnd();
+
+        for (int i : sorted) {
+            val resource = resources.get(i);
+
+            if (getStart(resource) >= rangeEnd) {
+                copy(rangeStart, target, position, rangeEnd - rangeStart,
+                        buffer);
+
+                position += rangeEnd - rangeStart;
+                rangeStart = getStart(resource);
+            }
+
+            rangeEnd = Math.max(rangeEnd, getEnd(resource));
+            newOffsets[i] = position + getStart(resource) - rangeStart;
+
+            if (position + rangeEnd - rangeStart > Integer.MAX_VALUE)
+                throw new IOException("Archive is too large");
+        }
+
+        copy(rangeStart, target, position, rangeEnd - rangeStart, buffer);
+
+        copy(0, target, 0, PsFsV1Header.SIZE, buffer);
+
+        val entries = ByteBuffer.allocate(COMPACT_CHUNK_ENTRIES *
+                PsFsV1Index.ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int first = 0; first < resources.size();
+             first += COMPACT_CHUNK_ENTRIES) {
+            int count = Math.min(COMPACT_CHUNK_ENTRIES,
+                    resources.size() - first);
+
+            readFully(entries.clear().limit(count * PsFsV1Index.ENTRY_SIZE),
+                    getEntryPosition(first));
+
+            for (int i = 0; i < count; i++) {
+                entries.putInt(i * PsFsV1Index.ENTRY_SIZE +
+                                PsFsV1Index.OFFSET_POSITION,
+                        (int) newOffsets[first + i]);
+            }
+
+            PsFsV1Packer.writeFully(target, entries.flip(),
+                    getEntryPosition(first));
+        }
+    }
+
+    private int getIndex(String name) {
+        val index = firstIndexes.get(name);
+
+        if (index == null)
+            throw new IllegalArgumentException("Resource is not found: " +
+                    name);
+
+        return index;
+    }
+
+    private boolean canWriteInPlace(int index, int size) {
+        val resource = resources.get(index);
+
+        long start = getStart(resource);
+        long end = resource.getOffset() + (long) size;
+
+        if (start < getIndexEnd() || end > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        // the unused space after the resource can be overwritten, even past
+        // the end of the file
+        for (int i = 0; i < resources.size(); i++) {
+            if (i != index && intersects(resources.get(i), start, end)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void relocate(int index) throws IOException {
+        val resource = resources.get(index);
+
+        long resourceOffset = getAppendOffset(resource.getSize(),
+                getIndexEnd() + PsFsV1Index.ENTRY_SIZE);
+        long target = resourceOffset + PsFsV1Index.USELESS_HEADER_SIZE;
+
+        PsFsV1Packer.writeFully(channel, ByteBuffer.allocate(
+                PsFsV1Index.USELESS_HEADER_SIZE), resourceOffset);
+
+        copy(resource.getOffset(), channel, target, resource.getSize(),
+                ByteBuffer.allocate(COPY_BUFFER_SIZE));
+
+        writeEntryLocation(index, resource.getSize(), resourceOffset);
+    }
+
+    private long appendData(ByteBuffer data, long minOffset)
+            throws IOException {
+        long resourceOffset = getAppendOffset(data.remaining(), minOffset);
+
+        PsFsV1Packer.writeFully(channel, ByteBuffer.allocate(
+                PsFsV1Index.USELESS_HEADER_SIZE), resourceOffset);
+        PsFsV1Packer.writeFully(channel, data,
+                resourceOffset + PsFsV1Index.USELESS_HEADER_SIZE);
+
+        return resourceOffset;
+    }
+
+    private long getAppendOffset(int size, long minOffset)
+            throws IOException {
+        long resourceOffset = Math.max(channel.size(), minOffset);
+
+        if (resourceOffset + PsFsV1Index.USELESS_HEADER_SIZE + size >
+                Integer.MAX_VALUE)
+            throw new IOException("Archive is too large");
+
+        return resourceOffset;
+    }
+
+    private void writeEntryLocation(int index, int size, long resourceOffset)
+            throws IOException {
+        // only the fields are written, the name and the separators are kept
+        writeInt(getEntryPosition(index) + PsFsV1Index.SIZE_POSITION,
+                size + PsFsV1Index.USELESS_HEADER_SIZE);
+        writeInt(getEntryPosition(index) + PsFsV1Index.OFFSET_POSITION,
+                (int) resourceOffset);
+
+        val resource = resources.get(index);
+
+        resources.set(index, new Resource(resource.getName(), size,
+                (int) resourceOffset + PsFsV1Index.USELESS_HEADER_SIZE));
+    }
+
+    private void writeCount() throws IOException {
+        writeInt(PsFsV1Header.COUNT_POSITION, resources.size());
+    }
+
+    private void writeInt(long position, int value) throws IOException {
+        PsFsV1Packer.writeFully(channel, ByteBuffer.allocate(Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0, value), position);
+    }
+
+    private void copy(long from, FileChannel target, long to, long length,
+                      ByteBuffer buffer) throws IOException {
+        for (long copied = 0; copied < length; ) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(),
+                    length - copied));
+
+            readFully(buffer, from + copied);
+            PsFsV1Packer.writeFully(target, buffer.flip(), to + copied);
+
+            copied += buffer.limit();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+
+            if (read == -1)
+                throw new EOFException("End of file is reached.");
+
+            position += read;
+        }
+    }
+
+    private long getIndexEnd() {
+        return getEntryPosition(resources.size());
+    }
+
+    private static long getEntryPosition(int index) {
+        return PsFsV1Header.SIZE +
+                (long) index * PsFsV1Index.ENTRY_SIZE;
+    }
+
+    private static boolean intersects(Resource resource, long start,
+                                      long end) {
+        return getStart(resource) < end && getEnd(resource) > start;
+    }
+
+    // the resource header belongs to the resource
+    private static long getStart(Resource resource) {
+        return resource.getOffset() - PsFsV1Index.USELESS_HEADER_SIZE;
+    }
+
+    private static long getEnd(Resource resource) {
+        return (long) resource.getOffset() + resource.getSize();
+    }
+}
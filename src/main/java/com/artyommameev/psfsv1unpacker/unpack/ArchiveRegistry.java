@@ -0,0 +1,286 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A bounded pool of open archives for long-running services.
+ * <p>
+ * The registry keeps the {@link PsFsV1Unpacker}s of recently used archives
+ * open, together with their parsed indexes, and evicts the least recently
+ * used ones when the count of archives exceeds the limit. Archives are
+ * reference-counted: an evicted archive that is still in use is closed only
+ * when its last {@link Handle} is closed, so an archive is never closed in
+ * the middle of a read.
+ * <p>
+ * The registry is safe for use by multiple threads.
+ *
+ * @author Artyom Mameev
+ */
+public class ArchiveRegistry implements Closeable {
+
+    private final int maxOpenArchives;
+    private final IndexCache indexCache;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(
+            16, 0.75f, true);
+    private boolean closed = false;
+
+    /**
+     * Instantiates a new ArchiveRegistry.
+     *
+     * @param maxOpenArchives the maximum count of archives kept open.
+     * @throws IllegalArgumentException if the maximum count is <= 0.
+     */
+    public ArchiveRegistry(int maxOpenArchives) {
+        this(maxOpenArchives, null);
+    }
+
+    /**
+     * Instantiates a new ArchiveRegistry, which opens archives with an
+     * {@link IndexCache}.
+     *
+     * @param maxOpenArchives the maximum count of archives kept open.
+     * @param indexCache      the index cache, or null if indexes should
+     *                        always be parsed from the archives.
+     * @throws IllegalArgumentException if the maximum count is <= 0.
+     */
+    public ArchiveRegistry(int maxOpenArchives, IndexCache indexCache) {
+        if (maxOpenArchives > 0) {
+            this.maxOpenArchives = maxOpenArchives;
+        } else throw new IllegalArgumentException(
+                "Max open archives cannot be <= 0");
+
+        this.indexCache = indexCache;
+    }
+
+    /**
+     * Acquires an open archive.
+     * <p>
+     * The archive is opened and its index is parsed if it is not in the
+     * registry yet. The returned handle must be closed after use.
+     *
+     * @param file the 'PS_FS_V1' archive.
+     * @return the handle of the open archive.
+     * @throws NullPointerException     if the file is null.
+     * @throws IllegalArgumentException if the file has a wrong header, or if
+     *                                  an index entry is invalid.
+     * @throws IOException              if the file is corrupted.
+     * @throws IllegalStateException    if the registry is closed.
+     */
+    public Handle acquire(@NonNull File file) throws IOException {
+        val path = file.getCanonicalFile().toPath();
+
+        synchronized (this) {
+            val entry = getEntry(path);
+
+            if (entry != null) {
+                return new Handle(entry);
+            }
+        }
+
+        // the archive is opened outside the lock to not block other readers
+        val unpacker = new PsFsV1Unpacker(path.toFile(), indexCache);
+
+        try {
+            unpacker.getResourceTable();
+        } catch (IOException | RuntimeException e) {
+            unpacker.close();
+
+            throw e;
+        }
+
+        val closeables = new ArrayList<PsFsV1Unpacker>();
+
+        // the unpacker is closed unless it is added to the registry, also if
+        // the registry is closed in the meantime
+        closeables.add(unpacker);
+
+        try {
+            synchronized (this) {
+                val existingEntry = getEntry(path);
+
+                if (existingEntry != null) {
+                    // another thread has opened the archive in the meantime
+                    return new Handle(existingEntry);
+                }
+
+                val entry = new Entry(path, unpacker);
+                entries.put(path, entry);
+
+                closeables.remove(unpacker);
+                closeables.addAll(evict());
+
+                return new Handle(entry);
+            }
+        } finally {
+            closeAll(closeables);
+        }
+    }
+
+    /**
+     * Returns the count of archives in the registry.
+     *
+     * @return the count of archives in the registry.
+     */
+    public synchronized int getOpenArchiveCount() {
+        return entries.size();
+    }
+
+    /**
+     * Closes the registry and all archives that are not in use. Archives in
+     * use are closed when their last handle is closed.
+     *
+     * @throws IOException if an archive cannot be closed, with the failures
+     *                     of the other archives as suppressed exceptions.
+     */
+    @Override
+    public void close() throws IOException {
+        val closeables = new ArrayList<PsFsV1Unpacker>();
+
+        synchronized (this) {
+            closed = true;
+
+            for (val entry : entries.values()) {
+                entry.evicted = true;
+
+                if (entry.references == 0) {
+                    closeables.add(entry.unpacker);
+                }
+            }
+
+            entries.clear();
+        }
+
+        closeAll(closeables);
+    }
+
+    private Entry getEntry(Path path) {
+        if (closed)
+            throw new IllegalStateException("Registry is closed");
+
+        val entry = entries.get(path);
+
+        if (entry != null) {
+            entry.references++;
+        }
+
+        return entry;
+    }
+
+    private ArrayList<PsFsV1Unpacker> evict() {
+        val closeables = new ArrayList<PsFsV1Unpacker>();
+
+        while (entries.size() > maxOpenArchives) {
+            // archives that are not in use are evicted first
+            val victim = entries.values().stream()
+                    .filter(entry -> entry.references == 0)
+                    .findFirst()
+                    .orElse(entries.values().iterator().next());
+
+            entries.remove(victim.path);
+            victim.evicted = true;
+
+            if (victim.references == 0) {
+                closeables.add(victim.unpacker);
+            }
+        }
+
+        return closeables;
+    }
+
+    private void release(Entry entry) throws IOException {
+        synchronized (this) {
+            entry.references--;
+
+            if (!entry.evicted || entry.references > 0) {
+                return;
+            }
+        }
+
+        entry.unpacker.close();
+    }
+
+    private static void closeAll(Iterable<PsFsV1Unpacker> unpackers)
+            throws IOException {
+        IOException exception = null;
+
+        for (val unpacker : unpackers) {
+            try {
+                unpacker.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * A reference to an open archive of the registry.
+     * <p>
+     * The archive stays open at least until the handle is closed.
+     */
+    public class Handle implements Closeable {
+
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Returns the unpacker of the archive. The unpacker must not be
+         * closed directly.
+         *
+         * @return the unpacker of the archive.
+         * @throws IllegalStateException if the handle is closed.
+         */
+        public PsFsV1Unpacker getUnpacker() {
+            if (closed.get())
+                throw new IllegalStateException("Handle is closed");
+
+            return entry.unpacker;
+        }
+
+        /**
+         * Releases the archive. Closing the handle more than once has no
+         * effect.
+         *
+         * @throws IOException if the evicted archive cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final Path path;
+        private final PsFsV1Unpacker unpacker;
+        private int references = 1;
+        private boolean evicted = false;
+
+        private Entry(Path path, PsFsV1Unpacker unpacker) {
+            this.path = path;
+            this.unpacker = unpacker;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * A job that unpacks multiple {@link Resource}s of a {@link PsFsV1Unpacker}
+ * to a selected directory.
+ * <p>
+ * The resources are sorted by their offsets and grouped into runs of nearby
+ * resources (see {@link ExtractionPlan}). Every run is read into memory with
+ * one sequential read and split into the target files, while resources
+ * larger than a run are copied directly. The runs are distributed between a
+ * bounded pool of worker threads, which read the archive with positional
+ * reads on the same channel. The job
+ * can be cancelled from any thread: the workers check for cancellation
+ * between chunks of the resource data, so even large resources are stopped
+ * promptly. If the job is cancelled, or if one of the resources cannot be
+ * unpacked, the remaining resources are not unpacked, and partially written
+ * files are deleted before {@link #run()} returns.
+ * <p>
+ * In the pipelined mode (see {@link ExtractionOptions#getPipelineCapacity()})
+ * one reader thread reads the runs in the order of their offsets into
+ * buffers, and the worker threads write the buffers to the target files,
+ * large resources chunk by chunk with positional writes. The buffers are
+ * allocated when they are needed, sized to the runs, and reused. The
+ * reader waits for a returned buffer when the buffers would exceed the
+ * capacity, so the memory is bounded by the capacity, but at least two
+ * runs of {@link ExtractionPlan#MAX_RUN_SIZE} bytes can be buffered.
+ * <p>
+ * With {@link ExtractionOptions#isSkipExisting()}, the resources that were
+ * unpacked by a previous run are skipped, so an interrupted unpacking can be
+ * resumed.
+ * <p>
+ * A job can be run only once.
+ *
+ * @author Artyom Mameev
+ */
+public class ExtractionJob {
+
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_RUN_BUFFER_SIZE = 64 * 1024;
+
+    private final PsFsV1Unpacker unpacker;
+    private final File directory;
+    private final List<Resource> resources;
+    private final ExtractionOptions options;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final Queue<ByteBuffer> runBuffers =
+            new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelled = false;
+    private volatile boolean stopped = false;
+
+    /**
+     * Instantiates a new ExtractionJob.
+     *
+     * @param unpacker  the unpacker of the archive.
+     * @param directory the directory to which the {@link Resource}s should be
+     *                  unpacked.
+     * @param resources the {@link Resource}s that should be unpacked.
+     * @param options   the extraction options.
+     */
+    ExtractionJob(PsFsV1Unpacker unpacker, File directory,
+                  Collection<Resource> resources, ExtractionOptions options) {
+        this.unpacker = unpacker;
+        this.directory = directory;
+        this.resources = new ArrayList<>(resources);
+        this.options = options;
+    }
+
+    /**
+     * Runs the job in the current thread and waits until all resources are
+     * unpacked.
+     *
+     * @throws InterruptedIOException if the job is cancelled, or if the
+     *                                current thread is interrupted.
+     * @throws IOException            if the file is corrupted.
+     * @throws IllegalStateException  if the job is already started.
+     */
+    public void run() throws IOException {
+        if (!started.compareAndSet(false, true))
+            throw new IllegalStateException("Job is already started");
+
+        try {
+            unpackRuns();
+        } finally {
+            // the buffers are released with the run, not with the job or
+            // the threads that ran it
+            runBuffers.clear();
+        }
+    }
+
+    private void unpackRuns() throws IOException {
+        val runs = options.isOrderByOffset() ?
+                ExtractionPlan.create(resources) :
+                ExtractionPlan.createUnordered(resources);
+
+        if (options.getPipelineCapacity() > 0) {
+            new ExtractionPipeline(this, unpacker, directory, options)
+                    .run(runs);
+
+            return;
+        }
+
+        int threads = Math.min(options.getThreads(), runs.size());
+
+        if (threads <= 1) {
+            for (val run : runs) {
+                unpack(run);
+
+                run.getResources().forEach(
+                        options.getResourceUnpackedCallback());
+            }
+
+            return;
+        }
+
+        val executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            val completionService =
+                    new ExecutorCompletionService<ExtractionPlan.Run>(
+                            executor);
+
+            for (val run : runs) {
+                completionService.submit(() -> {
+                    unpack(run);
+
+                    return run;
+                });
+            }
+
+            for (int i = 0; i < runs.size(); i++) {
+                if (cancelled)
+                    throw new InterruptedIOException("Unpacking is cancelled");
+
+                val run = completionService.take().get();
+
+                run.getResources().forEach(
+                        options.getResourceUnpackedCallback());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Unpacking is interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw new IOException(e.getCause());
+        } finally {
+            // the workers are not interrupted, because an interrupted
+            // positional read closes the channel shared by all of them
+            stopped = true;
+
+            executor.shutdown();
+
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Cancels the job. The job stops unpacking as soon as possible and
+     * {@link #run()} throws an {@link InterruptedIOException}. Cancelling a
+     * job that is not started prevents it from unpacking anything.
+     */
+    public void cancel() {
+        cancelled = true;
+        stopped = true;
+    }
+
+    /**
+     * Checks whether the job is cancelled.
+     *
+     * @return true if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the count of resources that were skipped because they had
+     * already been unpacked.
+     *
+     * @return the count of skipped resources.
+     */
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Stops the job without cancelling it, after a failure.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Checks whether the job should stop, because it is cancelled or has
+     * failed.
+     *
+     * @return true if the job should stop.
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the resources that are not unpacked yet. The already unpacked
+     * resources are counted as skipped and passed to the callback, unless
+     * skipping is disabled by the options.
+     *
+     * @param resources       the resources that should be unpacked.
+     * @param skippedCallback the callback of the skipped resources.
+     * @return the resources that should be unpacked.
+     * @throws IOException if the checksum of a resource cannot be
+     *                     calculated.
+     */
+    List<Resource> skipUnpacked(List<Resource> resources,
+                                Consumer<Resource> skippedCallback)
+            throws IOException {
+        if (!options.isSkipExisting()) {
+            return resources;
+        }
+
+        val pending = new ArrayList<Resource>();
+
+        for (val resource : resources) {
+            if (isUnpacked(resource)) {
+                skippedCount.incrementAndGet();
+
+                unpacker.getExtractionListener().resourceSkipped(resource);
+
+                skippedCallback.accept(resource);
+            } else {
+                pending.add(resource);
+            }
+        }
+
+        return pending;
+    }
+
+    private void unpack(ExtractionPlan.Run run) throws IOException {
+        if (stopped)
+            throw new InterruptedIOException("Unpacking is cancelled");
+
+        val pending = skipUnpacked(run.getResources(), resource -> {
+        });
+
+        if (pending.size() == 1) {
+            unpacker.unpackResource(directory, pending.get(0),
+                    () -> stopped);
+        } else if (pending.size() > 1) {
+            unpackTogether(pending);
+        }
+    }
+
+    private void unpackTogether(List<Resource> pending) throws IOException {
+        long start = pending.get(0).getOffset();
+        long end = 0;
+
+        for (val resource : pending) {
+            end = Math.max(end, (long) resource.getOffset() +
+                    resource.getSize());
+        }
+
+        val buffer = takeRunBuffer((int) (end - start));
+
+        try {
+            long startTime = System.nanoTime();
+
+            unpacker.readFully(buffer, start);
+
+            unpacker.getExtractionListener().rangeRead(pending.size(),
+                    end - start, System.nanoTime() - startTime);
+
+            for (val resource : pending) {
+                if (stopped)
+                    throw new InterruptedIOException("Unpacking is cancelled");
+
+                int position = (int) (resource.getOffset() - start);
+
+                unpacker.unpackResource(directory, resource, buffer
+                        .duplicate()
+                        .limit(position + resource.getSize())
+                        .position(position));
+            }
+        } finally {
+            runBuffers.add(buffer);
+        }
+    }
+
+    /**
+     * Takes a buffer of the job for a run, so that there are at most as
+     * many buffers as runs unpacked at the same time. A free buffer that is
+     * too small is replaced with a larger one, so jobs with small runs do
+     * not take {@link ExtractionPlan#MAX_RUN_SIZE} of direct memory per
+     * worker.
+     */
+    private ByteBuffer takeRunBuffer(int size) {
+        val buffer = runBuffers.poll();
+
+        if (buffer != null && buffer.capacity() >= size) {
+            return buffer.clear().limit(size);
+        }
+
+        return ByteBuffer.allocateDirect(getRunBufferCapacity(size))
+                .limit(size);
+    }
+
+    /**
+     * Returns the capacity of a buffer for a run of the given size: the
+     * size rounded up to a power of two, at least 64 KiB and at most
+     * {@link ExtractionPlan#MAX_RUN_SIZE}, so a buffer fits the runs of
+     * similar sizes.
+     *
+     * @param size the size of the run.
+     * @return the capacity of the buffer.
+     */
+    static int getRunBufferCapacity(int size) {
+        int capacity = MIN_RUN_BUFFER_SIZE;
+
+        while (capacity < size) {
+            capacity *= 2;
+        }
+
+        return Math.min(capacity, ExtractionPlan.MAX_RUN_SIZE);
+    }
+
+    private boolean isUnpacked(Resource resource) throws IOException {
+        val path = PsFsV1Unpacker.getTargetPath(directory, resource);
+
+        if (!Files.isRegularFile(path) ||
+                Files.size(path) != resource.getSize()) {
+            return false;
+        }
+
+        if (!options.isVerifyChecksums()) {
+            return true;
+        }
+
+        try (val existingChannel = FileChannel.open(path,
+                StandardOpenOption.READ);
+             val resourceChannel = unpacker.openResource(resource)) {
+            return checksum(existingChannel) == checksum(resourceChannel);
+        }
+    }
+
+    private long checksum(ReadableByteChannel channel) throws IOException {
+        val crc32c = new CRC32C();
+        val buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+
+        while (channel.read(buffer) != -1) {
+            if (stopped)
+                throw new InterruptedIOException("Unpacking is cancelled");
+
+            crc32c.update(buffer.flip());
+            buffer.clear();
+        }
+
+        return crc32c.getValue();
+    }
+
+    /**
+     * Waits until all tasks of a shut down executor are finished, without
+     * being interrupted.
+     *
+     * @param executor the executor.
+     */
+    static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+
+/**
+ * Receives progress and timing events of a {@link PsFsV1Unpacker}.
+ * <p>
+ * The resource events are sent from the threads that unpack the resources,
+ * so a listener used with {@link PsFsV1Unpacker#unpackResources} must be
+ * safe for use by multiple threads, and should return quickly. All methods
+ * do nothing by default.
+ *
+ * @author Artyom Mameev
+ * @see ExtractionMetrics
+ */
+public interface ExtractionListener {
+
+    /**
+     * The listener that ignores all events.
+     */
+    ExtractionListener NONE = new ExtractionListener() {
+    };
+
+    /**
+     * Called after the index of the archive is loaded.
+     *
+     * @param resourceCount the count of resources in the archive.
+     * @param nanos         the time of reading and parsing the index, or of
+     *                      loading it from the {@link IndexCache}.
+     */
+    default void indexParsed(int resourceCount, long nanos) {
+    }
+
+    /**
+     * Called after a {@link Resource} is unpacked.
+     * <p>
+     * A resource that is unpacked alone is copied by the operating system
+     * in one step, so the transfer time covers both reading the archive and
+     * writing the target. Resources that are read together with their
+     * neighbours by an {@link ExtractionJob} are written from memory, so the
+     * transfer time covers writing only, and the reading is reported by
+     * {@link #rangeRead}.
+     *
+     * @param resource      the unpacked {@link Resource}.
+     * @param openNanos     the time of creating the target file, or zero if
+     *                      the resource was unpacked to a channel.
+     * @param transferNanos the time of copying the resource data.
+     * @param totalNanos    the total time of unpacking the resource,
+     *                      including closing the target file.
+     */
+    default void resourceUnpacked(Resource resource, long openNanos,
+                                  long transferNanos, long totalNanos) {
+    }
+
+    /**
+     * Called after a range of the archive is read into memory by an
+     * {@link ExtractionJob}. The range contains multiple resources or,
+     * in the pipelined mode, one resource or a chunk of a large resource.
+     *
+     * @param resourceCount the count of resources in the range.
+     * @param bytes         the size of the range.
+     * @param nanos         the time of reading the range.
+     */
+    default void rangeRead(int resourceCount, long bytes, long nanos) {
+    }
+
+    /**
+     * Called after a {@link Resource} is skipped, because it had already
+     * been unpacked by a previous {@link ExtractionJob}.
+     *
+     * @param resource the skipped {@link Resource}.
+     */
+    default void resourceSkipped(Resource resource) {
+    }
+}
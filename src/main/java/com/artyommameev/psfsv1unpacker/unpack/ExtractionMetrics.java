@@ -0,0 +1,303 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * An {@link ExtractionListener} that aggregates the progress, the throughput
+ * and the latencies of unpacking.
+ * <p>
+ * The metrics are lock-free and can be read from any thread while the
+ * unpacking is running, for example to update a progress bar. They can be
+ * exposed through JMX by registering the instance in an MBean server:
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+ *         new ObjectName("com.artyommameev.psfsv1unpacker:type=Extraction"));
+ * </pre>
+ * Comparing the read, transfer and total latencies shows whether the time
+ * is spent on reading the archive, on writing the data or on creating the
+ * target files.
+ * <p>
+ * Besides the average throughput, the metrics keep the unpacked bytes of
+ * the last five seconds in buckets of half a second, so the current
+ * throughput reflects slowdowns and stalls that the average hides.
+ *
+ * @author Artyom Mameev
+ */
+public class ExtractionMetrics implements ExtractionListener,
+        ExtractionMetricsMXBean {
+
+    private static final int RECENT_BUCKETS = 10;
+    private static final long RECENT_BUCKET_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final LongAdder resourcesUnpacked = new LongAdder();
+    private final LongAdder bytesUnpacked = new LongAdder();
+    private final LongAdder resourcesSkipped = new LongAdder();
+    private final LongAdder bytesSkipped = new LongAdder();
+    private final LongSupplier clock;
+    private final AtomicLong startTime;
+    private final AtomicLong indexParseNanos = new AtomicLong();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram openLatency = new LatencyHistogram();
+    private final LatencyHistogram transferLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final AtomicLongArray recentBytes =
+            new AtomicLongArray(RECENT_BUCKETS);
+    // the numbers of the half-second intervals counted by the buckets
+    private final AtomicLongArray recentTicks =
+            new AtomicLongArray(RECENT_BUCKETS);
+
+    /**
+     * Instantiates new ExtractionMetrics and starts the throughput
+     * measurement.
+     */
+    public ExtractionMetrics() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * Instantiates new ExtractionMetrics with a clock, for tests.
+     *
+     * @param clock the source of the time in nanoseconds.
+     */
+    ExtractionMetrics(LongSupplier clock) {
+        this.clock = clock;
+
+        startTime = new AtomicLong(clock.getAsLong());
+
+        clearRecentBytes();
+    }
+
+    @Override
+    public void indexParsed(int resourceCount, long nanos) {
+        indexParseNanos.set(nanos);
+    }
+
+    @Override
+    public void resourceUnpacked(Resource resource, long openNanos,
+                                 long transferNanos, long totalNanos) {
+        resourcesUnpacked.increment();
+        bytesUnpacked.add(resource.getSize());
+        recordRecentBytes(resource.getSize());
+
+        openLatency.record(openNanos);
+        transferLatency.record(transferNanos);
+        totalLatency.record(totalNanos);
+    }
+
+    @Override
+    public void rangeRead(int resourceCount, long bytes, long nanos) {
+        readLatency.record(nanos);
+    }
+
+    @Override
+    public void resourceSkipped(Resource resource) {
+        resourcesSkipped.increment();
+        bytesSkipped.add(resource.getSize());
+    }
+
+    @Override
+    public long getResourcesUnpacked() {
+        return resourcesUnpacked.sum();
+    }
+
+    @Override
+    public long getBytesUnpacked() {
+        return bytesUnpacked.sum();
+    }
+
+    @Override
+    public long getResourcesSkipped() {
+        return resourcesSkipped.sum();
+    }
+
+    @Override
+    public long getBytesSkipped() {
+        return bytesSkipped.sum();
+    }
+
+    /**
+     * Returns the average throughput since the metrics were created or
+     * reset.
+     *
+     * @return the throughput in megabytes (10^6 bytes) per second.
+     */
+    @Override
+    public double getMegabytesPerSecond() {
+        long nanos = clock.getAsLong() - startTime.get();
+
+        return getBytesUnpacked() * 1e3 / Math.max(nanos, 1);
+    }
+
+    /**
+     * Returns the throughput of the last five seconds, or of the time since
+     * the metrics were created or reset, if it is shorter.
+     *
+     * @return the throughput in megabytes (10^6 bytes) per second.
+     */
+    @Override
+    public double getRecentMegabytesPerSecond() {
+        long elapsed = clock.getAsLong() - startTime.get();
+        long tick = elapsed / RECENT_BUCKET_NANOS;
+
+        long bytes = 0;
+
+        for (int i = 0; i < RECENT_BUCKETS; i++) {
+            if (recentTicks.get(i) > tick - RECENT_BUCKETS) {
+                bytes += recentBytes.get(i);
+            }
+        }
+
+        // the current bucket is counted only up to now
+        long nanos = Math.min(elapsed, (RECENT_BUCKETS - 1) *
+                RECENT_BUCKET_NANOS + elapsed % RECENT_BUCKET_NANOS);
+
+        return bytes * 1e3 / Math.max(nanos, 1);
+    }
+
+    @Override
+    public double getIndexParseMillis() {
+        return indexParseNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getReadLatencyMeanMicros() {
+        return readLatency.getMean() / 1e3;
+    }
+
+    @Override
+    public long getReadLatencyP99Micros() {
+        return toMicros(readLatency.getPercentile(99));
+    }
+
+    @Override
+    public double getOpenLatencyMeanMicros() {
+        return openLatency.getMean() / 1e3;
+    }
+
+    @Override
+    public long getOpenLatencyP99Micros() {
+        return toMicros(openLatency.getPercentile(99));
+    }
+
+    @Override
+    public double getTransferLatencyMeanMicros() {
+        return transferLatency.getMean() / 1e3;
+    }
+
+    @Override
+    public long getTransferLatencyP99Micros() {
+        return toMicros(transferLatency.getPercentile(99));
+    }
+
+    @Override
+    public double getTotalLatencyMeanMicros() {
+        return totalLatency.getMean() / 1e3;
+    }
+
+    @Override
+    public long getTotalLatencyP50Micros() {
+        return toMicros(totalLatency.getPercentile(50));
+    }
+
+    @Override
+    public long getTotalLatencyP99Micros() {
+        return toMicros(totalLatency.getPercentile(99));
+    }
+
+    @Override
+    public long getTotalLatencyMaxMicros() {
+        return toMicros(totalLatency.getMax());
+    }
+
+    /**
+     * Returns the histogram of the times of reading ranges of resources.
+     *
+     * @return the histogram of the read latencies.
+     */
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * Returns the histogram of the times of creating the target files.
+     *
+     * @return the histogram of the open latencies.
+     */
+    public LatencyHistogram getOpenLatency() {
+        return openLatency;
+    }
+
+    /**
+     * Returns the histogram of the times of copying the resource data.
+     *
+     * @return the histogram of the transfer latencies.
+     */
+    public LatencyHistogram getTransferLatency() {
+        return transferLatency;
+    }
+
+    /**
+     * Returns the histogram of the total times of unpacking the resources.
+     *
+     * @return the histogram of the total latencies.
+     */
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency;
+    }
+
+    /**
+     * Clears the metrics and restarts the throughput measurement.
+     */
+    @Override
+    public void reset() {
+        resourcesUnpacked.reset();
+        bytesUnpacked.reset();
+        resourcesSkipped.reset();
+        bytesSkipped.reset();
+        indexParseNanos.set(0);
+        readLatency.reset();
+        openLatency.reset();
+        transferLatency.reset();
+        totalLatency.reset();
+        clearRecentBytes();
+        startTime.set(clock.getAsLong());
+    }
+
+    private void recordRecentBytes(long bytes) {
+        long tick = (clock.getAsLong() - startTime.get()) /
+                RECENT_BUCKET_NANOS;
+        int bucket = (int) (tick % RECENT_BUCKETS);
+
+        if (recentTicks.get(bucket) != tick) {
+            // a bucket is reused once per interval, so the lock is rare
+            synchronized (recentTicks) {
+                if (recentTicks.get(bucket) != tick) {
+                    recentBytes.set(bucket, 0);
+                    recentTicks.set(bucket, tick);
+                }
+            }
+        }
+
+        recentBytes.addAndGet(bucket, bytes);
+    }
+
+    private void clearRecentBytes() {
+        synchronized (recentTicks) {
+            for (int i = 0; i < RECENT_BUCKETS; i++) {
+                recentTicks.set(i, Long.MIN_VALUE);
+                recentBytes.set(i, 0);
+            }
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,106 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+/**
+ * The JMX management interface of {@link ExtractionMetrics}.
+ * <p>
+ * The latencies are in microseconds and the percentiles are upper bounds,
+ * see {@link LatencyHistogram}.
+ *
+ * @author Artyom Mameev
+ */
+public interface ExtractionMetricsMXBean {
+
+    /**
+     * Returns the count of unpacked resources.
+     */
+    long getResourcesUnpacked();
+
+    /**
+     * Returns the total size of unpacked resources in bytes.
+     */
+    long getBytesUnpacked();
+
+    /**
+     * Returns the count of resources skipped because they had already been
+     * unpacked.
+     */
+    long getResourcesSkipped();
+
+    /**
+     * Returns the total size of skipped resources in bytes.
+     */
+    long getBytesSkipped();
+
+    /**
+     * Returns the average unpacking throughput since the metrics were
+     * created or reset.
+     */
+    double getMegabytesPerSecond();
+
+    /**
+     * Returns the unpacking throughput of the last five seconds.
+     */
+    double getRecentMegabytesPerSecond();
+
+    /**
+     * Returns the time of loading the last index.
+     */
+    double getIndexParseMillis();
+
+    /**
+     * Returns the mean time of reading a range of resources.
+     */
+    double getReadLatencyMeanMicros();
+
+    /**
+     * Returns the 99th percentile of the times of reading a range of
+     * resources.
+     */
+    long getReadLatencyP99Micros();
+
+    /**
+     * Returns the mean time of creating a target file.
+     */
+    double getOpenLatencyMeanMicros();
+
+    /**
+     * Returns the 99th percentile of the times of creating a target file.
+     */
+    long getOpenLatencyP99Micros();
+
+    /**
+     * Returns the mean time of copying a resource.
+     */
+    double getTransferLatencyMeanMicros();
+
+    /**
+     * Returns the 99th percentile of the times of copying a resource.
+     */
+    long getTransferLatencyP99Micros();
+
+    /**
+     * Returns the mean total time of unpacking a resource.
+     */
+    double getTotalLatencyMeanMicros();
+
+    /**
+     * Returns the median total time of unpacking a resource.
+     */
+    long getTotalLatencyP50Micros();
+
+    /**
+     * Returns the 99th percentile of the total times of unpacking a
+     * resource.
+     */
+    long getTotalLatencyP99Micros();
+
+    /**
+     * Returns the maximum total time of unpacking a resource.
+     */
+    long getTotalLatencyMaxMicros();
+
+    /**
+     * Clears the metrics.
+     */
+    void reset();
+}
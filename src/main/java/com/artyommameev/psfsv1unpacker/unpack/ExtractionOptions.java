@@ -0,0 +1,80 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.With;
+
+import java.util.function.Consumer;
+
+/**
+ * Encapsulates options of unpacking multiple {@link Resource}s with
+ * {@link PsFsV1Unpacker#unpackResources}.
+ * <p>
+ * The options are immutable, modified copies can be created with the
+ * {@code with...} methods. The resource unpacked callback is called in the
+ * thread that started the unpacking, after every unpacked or skipped
+ * resource.
+ * <p>
+ * If existing files are skipped, a resource is not unpacked again when its
+ * target file already exists and has the size of the resource, and, if
+ * checksums are verified, the same CRC32C checksum as the resource data.
+ * This allows resuming an interrupted unpacking.
+ * <p>
+ * If the resources are ordered by offset, they are unpacked in the order of
+ * their data in the archive, and nearby resources are read together with
+ * one sequential read, see {@link ExtractionJob}. Otherwise they are
+ * unpacked in the given order, one read per resource.
+ * <p>
+ * If the pipeline capacity is positive, reading the archive and writing the
+ * target files are decoupled: one reader thread fills buffers from the
+ * archive and the worker threads write them, so the archive and the target
+ * disk are busy at the same time. The capacity limits the memory of the
+ * buffers, see {@link ExtractionJob}.
+ *
+ * @author Artyom Mameev
+ */
+@Getter
+@With
+public class ExtractionOptions {
+
+    private final int threads;
+    private final Consumer<Resource> resourceUnpackedCallback;
+    private final boolean skipExisting;
+    private final boolean verifyChecksums;
+    private final boolean orderByOffset;
+    private final long pipelineCapacity;
+
+    private ExtractionOptions(int threads,
+                              @NonNull Consumer<Resource>
+                                      resourceUnpackedCallback,
+                              boolean skipExisting, boolean verifyChecksums,
+                              boolean orderByOffset, long pipelineCapacity) {
+        if (threads > 0) {
+            this.threads = threads;
+        } else throw new IllegalArgumentException("Threads cannot be <= 0");
+
+        this.resourceUnpackedCallback = resourceUnpackedCallback;
+        this.skipExisting = skipExisting;
+        this.verifyChecksums = verifyChecksums;
+        this.orderByOffset = orderByOffset;
+
+        if (pipelineCapacity >= 0) {
+            this.pipelineCapacity = pipelineCapacity;
+        } else throw new IllegalArgumentException(
+                "Pipeline capacity cannot be < 0");
+    }
+
+    /**
+     * Returns the default options: one worker thread per available processor,
+     * no callback, existing files are overwritten, the resources are ordered
+     * by offset, and reading and writing are not pipelined.
+     *
+     * @return the default options.
+     */
+    public static ExtractionOptions defaults() {
+        return new ExtractionOptions(
+                Runtime.getRuntime().availableProcessors(), resource -> {
+        }, false, false, true, 0);
+    }
+}
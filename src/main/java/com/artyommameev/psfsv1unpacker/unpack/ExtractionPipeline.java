@@ -0,0 +1,460 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The pipelined mode of an {@link ExtractionJob}.
+ * <p>
+ * One reader thread reads the runs of the {@link ExtractionPlan} in order
+ * into buffers and queues them, and the writer threads write the queued
+ * buffers to the target files and return them to the reader. The reader
+ * allocates the buffers when it needs them, sized to the runs, and reuses
+ * the returned ones. When new buffers would exceed the capacity, it waits
+ * for a returned buffer, which bounds the memory and slows the reader down
+ * to the speed of the writers.
+ *
+ * @author Artyom Mameev
+ */
+final class ExtractionPipeline {
+
+    private static final long POLL_TIMEOUT_MILLIS = 10;
+    private static final WriteTask END = () -> {
+    };
+
+    private final ExtractionJob job;
+    private final PsFsV1Unpacker unpacker;
+    private final File directory;
+    private final ExtractionOptions options;
+    private final BlockingQueue<ByteBuffer> freeBuffers =
+            new LinkedBlockingQueue<>();
+    private final BlockingQueue<WriteTask> writeQueue =
+            new LinkedBlockingQueue<>();
+    private final BlockingQueue<Resource> completed =
+            new LinkedBlockingQueue<>();
+    private final Set<LargeTarget> openTargets =
+            ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure =
+            new AtomicReference<>();
+    private final long maxAllocatedBytes;
+
+    // the capacity of the allocated buffers, used only by the reader
+    private long allocatedBytes = 0;
+
+    /**
+     * Instantiates a new ExtractionPipeline.
+     *
+     * @param job       the job that runs the pipeline.
+     * @param unpacker  the unpacker of the archive.
+     * @param directory the directory to which the resources are unpacked.
+     * @param options   the extraction options with a positive pipeline
+     *                  capacity.
+     */
+    ExtractionPipeline(ExtractionJob job, PsFsV1Unpacker unpacker,
+                       File directory, ExtractionOptions options) {
+        this.job = job;
+        this.unpacker = unpacker;
+        this.directory = directory;
+        this.options = options;
+
+        // one buffer is read while another one is written
+        maxAllocatedBytes = Math.max(options.getPipelineCapacity(),
+                2L * ExtractionPlan.MAX_RUN_SIZE);
+    }
+
+    /**
+     * Unpacks the runs and calls the resource unpacked callback in the
+     * current thread.
+     *
+     * @param runs the runs that should be unpacked.
+     * @throws InterruptedIOException if the job is cancelled, or if the
+     *                                current thread is interrupted.
+     * @throws IOException            if the file is corrupted.
+     */
+    void run(List<ExtractionPlan.Run> runs) throws IOException {
+        int resourceCount = runs.stream()
+                .mapToInt(run -> run.getResources().size())
+                .sum();
+
+        int writers = options.getThreads();
+
+        val executor = Executors.newFixedThreadPool(writers + 1);
+
+        try {
+            executor.execute(() -> guard(() -> read(runs, writers)));
+
+            for (int i = 0; i < writers; i++) {
+                executor.execute(() -> guard(this::write));
+            }
+
+            for (int i = 0; i < resourceCount; ) {
+                rethrowFailure();
+
+                val resource = completed.poll(POLL_TIMEOUT_MILLIS,
+                        TimeUnit.MILLISECONDS);
+
+                if (resource != null) {
+                    options.getResourceUnpackedCallback().accept(resource);
+
+                    i++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Unpacking is interrupted");
+        } finally {
+            job.stop();
+
+            executor.shutdown();
+
+            ExtractionJob.awaitTermination(executor);
+
+            // the chunks of a stopped job are never written, so the large
+            // targets that are not complete are deleted here
+            writeQueue.clear();
+
+            for (val target : openTargets) {
+                target.fail(new InterruptedIOException(
+                        "Unpacking is cancelled"));
+            }
+        }
+    }
+
+    private void read(List<ExtractionPlan.Run> runs, int writers)
+            throws IOException, InterruptedException {
+        for (val run : runs) {
+            // the skipped resources are reported like the unpacked ones
+            val pending = job.skipUnpacked(run.getResources(),
+                    completed::add);
+
+            if (pending.isEmpty()) {
+                continue;
+            }
+
+            if (pending.get(0).getSize() > ExtractionPlan.MAX_RUN_SIZE) {
+                readLargeResource(pending.get(0));
+            } else {
+                readRun(pending);
+            }
+        }
+
+        for (int i = 0; i < writers; i++) {
+            writeQueue.add(END);
+        }
+    }
+
+    private void readRun(List<Resource> pending)
+            throws IOException, InterruptedException {
+        long start = pending.get(0).getOffset();
+        long end = 0;
+
+        for (val resource : pending) {
+            end = Math.max(end, (long) resource.getOffset() +
+                    resource.getSize());
+        }
+
+        val buffer = readRange(start, (int) (end - start), pending.size());
+
+        writeQueue.add(new WriteTask() {
+            @Override
+            public void write() throws IOException {
+                for (val resource : pending) {
+                    checkStopped();
+
+                    int position = (int) (resource.getOffset() - start);
+
+                    unpacker.unpackResource(directory, resource,
+                            buffer.duplicate()
+                                    .limit(position + resource.getSize())
+                                    .position(position));
+
+                    completed.add(resource);
+                }
+            }
+
+            @Override
+            public ByteBuffer getBuffer() {
+                return buffer;
+            }
+        });
+    }
+
+    private void readLargeResource(Resource resource)
+            throws IOException, InterruptedException {
+        val target = new LargeTarget(resource);
+
+        try {
+            for (long position = 0; position < resource.getSize();
+                 position += ExtractionPlan.MAX_RUN_SIZE) {
+                int length = (int) Math.min(ExtractionPlan.MAX_RUN_SIZE,
+                        resource.getSize() - position);
+
+                val buffer = readRange(resource.getOffset() + position,
+                        length, 1);
+                val targetPosition = position;
+
+                writeQueue.add(new WriteTask() {
+                    @Override
+                    public void write() throws IOException {
+                        target.write(buffer, targetPosition);
+                    }
+
+                    @Override
+                    public ByteBuffer getBuffer() {
+                        return buffer;
+                    }
+                });
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            target.fail(e);
+
+            throw e;
+        }
+    }
+
+    private ByteBuffer readRange(long start, int length, int resourceCount)
+            throws IOException, InterruptedException {
+        val buffer = takeBuffer(length);
+
+        buffer.clear().limit(length);
+
+        long startTime = System.nanoTime();
+
+        try {
+            unpacker.readFully(buffer, start);
+        } catch (IOException | RuntimeException e) {
+            freeBuffers.add(buffer);
+
+            throw e;
+        }
+
+        unpacker.getExtractionListener().rangeRead(resourceCount, length,
+                System.nanoTime() - startTime);
+
+        return buffer.flip();
+    }
+
+    private ByteBuffer takeBuffer(int length)
+            throws IOException, InterruptedException {
+        int capacity = ExtractionJob.getRunBufferCapacity(length);
+        ByteBuffer buffer = freeBuffers.poll();
+
+        while (true) {
+            if (buffer != null) {
+                if (buffer.capacity() >= length) {
+                    return buffer;
+                }
+
+                // a returned buffer that is too small is dropped, so that
+                // its share of the capacity can be allocated again
+                allocatedBytes -= buffer.capacity();
+            }
+
+            if (allocatedBytes + capacity <= maxAllocatedBytes) {
+                allocatedBytes += capacity;
+
+                return ByteBuffer.allocateDirect(capacity);
+            }
+
+            checkStopped();
+
+            buffer = freeBuffers.poll(POLL_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void write() throws IOException, InterruptedException {
+        while (true) {
+            checkStopped();
+
+            val task = writeQueue.poll(POLL_TIMEOUT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+
+            if (task == END) {
+                return;
+            }
+
+            if (task != null) {
+                try {
+                    task.write();
+                } finally {
+                    freeBuffers.add(task.getBuffer());
+                }
+            }
+        }
+    }
+
+    private void checkStopped() throws InterruptedIOException {
+        if (job.isStopped())
+            throw new InterruptedIOException("Unpacking is cancelled");
+    }
+
+    private void guard(PipelineTask task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+
+            job.stop();
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        val throwable = failure.get();
+
+        if (throwable == null) {
+            return;
+        }
+
+        if (throwable instanceof IOException)
+            throw (IOException) throwable;
+        if (throwable instanceof RuntimeException)
+            throw (RuntimeException) throwable;
+        if (throwable instanceof Error)
+            throw (Error) throwable;
+
+        throw new IOException(throwable);
+    }
+
+    private interface PipelineTask {
+
+        void run() throws IOException, InterruptedException;
+    }
+
+    private interface WriteTask {
+
+        void write() throws IOException;
+
+        default ByteBuffer getBuffer() {
+            return null;
+        }
+    }
+
+    /**
+     * The target file of a resource larger than a buffer, which is written
+     * in chunks by multiple writer threads.
+     * <p>
+     * The chunks are written out of order into a temporary file, which is
+     * renamed to the target file when the last chunk is written, so an
+     * interrupted process never leaves a target file of the full size with
+     * unwritten ranges, which a resumed job would skip.
+     */
+    private final class LargeTarget {
+
+        private final Resource resource;
+        private final Path path;
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final long startTime = System.nanoTime();
+        private final long openNanos;
+        private final AtomicLong writeNanos = new AtomicLong();
+        private final AtomicInteger remainingChunks;
+
+        private LargeTarget(Resource resource) throws IOException {
+            this.resource = resource;
+
+            path = PsFsV1Unpacker.getTargetPath(directory, resource);
+            tempFile = Files.createTempFile(path.getParent(), "extract",
+                    ".part");
+
+            try {
+                channel = FileChannel.open(tempFile,
+                        StandardOpenOption.WRITE);
+            } catch (IOException | RuntimeException e) {
+                PsFsV1Unpacker.deletePartialFile(tempFile, e);
+
+                throw e;
+            }
+
+            openNanos = System.nanoTime() - startTime;
+
+            remainingChunks = new AtomicInteger((int) ((resource.getSize() +
+                    (long) ExtractionPlan.MAX_RUN_SIZE - 1) /
+                    ExtractionPlan.MAX_RUN_SIZE));
+
+            openTargets.add(this);
+        }
+
+        private void write(ByteBuffer chunk, long position)
+                throws IOException {
+            long chunkStartTime = System.nanoTime();
+
+            try {
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+
+                throw e;
+            }
+
+            writeNanos.addAndGet(System.nanoTime() - chunkStartTime);
+
+            if (remainingChunks.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        private void complete() throws IOException {
+            if (!openTargets.remove(this)) {
+                return;
+            }
+
+            try {
+                channel.close();
+
+                try {
+                    Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, path,
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                PsFsV1Unpacker.deletePartialFile(tempFile, e);
+
+                throw e;
+            }
+
+            unpacker.getExtractionListener().resourceUnpacked(resource,
+                    openNanos, writeNanos.get(),
+                    System.nanoTime() - startTime);
+
+            completed.add(resource);
+        }
+
+        private void fail(Exception cause) {
+            // a target is completed or deleted only once
+            if (!openTargets.remove(this)) {
+                return;
+            }
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+
+            PsFsV1Unpacker.deletePartialFile(tempFile, cause);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Plans the reads of an {@link ExtractionJob}.
+ * <p>
+ * The resources are sorted by their offsets in the archive and grouped into
+ * runs of nearby resources, so every run can be read with one sequential
+ * read and split in memory. This replaces random seeks with sequential,
+ * readahead-friendly reads, which matters on spinning disks and network
+ * volumes.
+ *
+ * @author Artyom Mameev
+ */
+final class ExtractionPlan {
+
+    /**
+     * The maximum size of a run. Larger resources form runs of their own and
+     * are copied without buffering.
+     */
+    static final int MAX_RUN_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The maximum count of resources in a run, so that archives of many
+     * small resources are still split into enough runs to create the target
+     * files in parallel.
+     */
+    static final int MAX_RUN_RESOURCES = 128;
+
+    /**
+     * The maximum gap between resources of a run, which is read and
+     * discarded instead of seeking over it.
+     */
+    static final int MAX_GAP = 64 * 1024;
+
+    private ExtractionPlan() {
+    }
+
+    /**
+     * Groups resources into runs sorted by offset.
+     *
+     * @param resources the resources that should be unpacked.
+     * @return the runs of resources.
+     */
+    static List<Run> create(Collection<Resource> resources) {
+        val sorted = new ArrayList<>(resources);
+        sorted.sort(Comparator.comparingInt(Resource::getOffset));
+
+        val runs = new ArrayList<Run>();
+        Run run = null;
+
+        for (val resource : sorted) {
+            if (run == null || !run.canAppend(resource)) {
+                run = new Run();
+                runs.add(run);
+            }
+
+            run.append(resource);
+        }
+
+        return runs;
+    }
+
+    /**
+     * Creates a run for every resource, keeping the order of the resources.
+     *
+     * @param resources the resources that should be unpacked.
+     * @return the runs of single resources.
+     */
+    static List<Run> createUnordered(Collection<Resource> resources) {
+        val runs = new ArrayList<Run>();
+
+        for (val resource : resources) {
+            val run = new Run();
+            run.append(resource);
+            runs.add(run);
+        }
+
+        return runs;
+    }
+
+    /**
+     * Resources that can be read with one sequential read.
+     */
+    static final class Run {
+
+        private final List<Resource> resources = new ArrayList<>();
+        private long start;
+        private long end;
+
+        List<Resource> getResources() {
+            return resources;
+        }
+
+        private boolean canAppend(Resource resource) {
+            long newEnd = Math.max(end, (long) resource.getOffset() +
+                    resource.getSize());
+
+            return resources.size() < MAX_RUN_RESOURCES &&
+                    resource.getOffset() - end <= MAX_GAP &&
+                    newEnd - start <= MAX_RUN_SIZE;
+        }
+
+        private void append(Resource resource) {
+            if (resources.isEmpty()) {
+                start = resource.getOffset();
+            }
+
+            resources.add(resource);
+            end = Math.max(end, (long) resource.getOffset() +
+                    resource.getSize());
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * A persistent cache of parsed archive indexes.
+ * <p>
+ * Every archive is cached in a separate file of the cache directory, which
+ * contains the compact {@link ResourceTable} together with its hash index.
+ * A cached table is valid while the size, the modification time and the
+ * header checksum of the archive are unchanged. Cached tables are
+ * memory-mapped and used without decoding the names: opening a known
+ * archive only verifies the CRC32C checksum of the cached table and the
+ * ranges of its values. A cache file that fails these checks is deleted and
+ * the archive is parsed again.
+ * <p>
+ * The total size of the cache files can be limited: when a stored table
+ * exceeds the limit, the least recently used cache files are deleted.
+ * <p>
+ * Cache files are replaced atomically, so the cache can be shared by
+ * multiple processes.
+ *
+ * @author Artyom Mameev
+ */
+public class IndexCache {
+
+    private static final byte[] MAGIC = "PSFSIDX1".getBytes(
+            StandardCharsets.US_ASCII);
+    // version 2 stores non-ASCII names in their decoded form, version 3
+    // adds the checksum of the table
+    private static final int VERSION = 3;
+
+    // magic, version, header checksum, table checksum, archive size,
+    // archive modified time
+    private static final int HEADER_SIZE = 8 + 4 + 4 + 4 + 8 + 8;
+
+    private static final int TABLE_CHECKSUM_POSITION = 8 + 4 + 4;
+
+    private static final String CACHE_FILE_SUFFIX = ".idx";
+
+    private final Path directory;
+    private final long maxSize;
+
+    /**
+     * Instantiates a new IndexCache of unlimited size. The directory is
+     * created on the first write.
+     *
+     * @param directory the cache directory.
+     * @throws NullPointerException if the directory is null.
+     */
+    public IndexCache(@NonNull File directory) {
+        this(directory, Long.MAX_VALUE);
+    }
+
+    /**
+     * Instantiates a new IndexCache, which keeps the total size of its cache
+     * files within a limit. The directory is created on the first write.
+     *
+     * @param directory the cache directory.
+     * @param maxSize   the maximum total size of the cache files in bytes.
+     * @throws NullPointerException     if the directory is null.
+     * @throws IllegalArgumentException if the maximum size is <= 0.
+     */
+    public IndexCache(@NonNull File directory, long maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Max size cannot be <= 0");
+
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Loads the cached table of an archive.
+     *
+     * @param archive the archive file.
+     * @param header  the current header of the archive.
+     * @return the cached table, or null if the archive is not cached, or if
+     * the cached table is outdated or corrupted.
+     * @throws IOException if the cache file cannot be read.
+     */
+    ResourceTable load(File archive, PsFsV1Header header)
+            throws IOException {
+        val cacheFile = getCacheFile(archive);
+
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        @Cleanup val channel = FileChannel.open(cacheFile,
+                StandardOpenOption.READ);
+
+        if (channel.size() < HEADER_SIZE ||
+                channel.size() > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        long[] fingerprint = getFingerprint(archive);
+
+        val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+
+        if (!Arrays.equals(magic, MAGIC) ||
+                buffer.getInt() != VERSION ||
+                buffer.getInt() != header.getChecksum()) {
+            return null;
+        }
+
+        int tableChecksum = buffer.getInt();
+
+        if (buffer.getLong() != fingerprint[0] ||
+                buffer.getLong() != fingerprint[1]) {
+            return null;
+        }
+
+        ResourceTable table;
+
+        try {
+            if (checksum(buffer) != tableChecksum)
+                throw new IllegalArgumentException("Table is corrupted");
+
+            table = ResourceTable.readFrom(buffer);
+        } catch (IllegalArgumentException e) {
+            // the damaged file is replaced when the parsed table is stored
+            Files.deleteIfExists(cacheFile);
+
+            return null;
+        }
+
+        touch(cacheFile);
+
+        return table;
+    }
+
+    /**
+     * Stores the table of an archive in the cache, replacing the previously
+     * cached table.
+     *
+     * @param archive the archive file.
+     * @param header  the header of the archive.
+     * @param table   the table of the archive.
+     * @throws IOException if the cache file cannot be written.
+     */
+    void store(File archive, PsFsV1Header header, ResourceTable table)
+            throws IOException {
+        long[] fingerprint = getFingerprint(archive);
+
+        val buffer = ByteBuffer.allocate(Math.toIntExact(HEADER_SIZE +
+                table.getSerializedSize())).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(header.getChecksum());
+        buffer.putInt(0);
+        buffer.putLong(fingerprint[0]);
+        buffer.putLong(fingerprint[1]);
+
+        table.writeTo(buffer);
+
+        buffer.putInt(TABLE_CHECKSUM_POSITION,
+                checksum(buffer.duplicate().flip().position(HEADER_SIZE)));
+
+        Files.createDirectories(directory);
+
+        val tempFile = Files.createTempFile(directory, "index", ".tmp");
+
+        try {
+            try (val channel = FileChannel.open(tempFile,
+                    StandardOpenOption.WRITE)) {
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            move(tempFile, getCacheFile(archive));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        if (maxSize != Long.MAX_VALUE) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used cache files until the total size of
+     * the cache files is within the limit.
+     *
+     * @throws IOException if the cache directory cannot be listed.
+     */
+    private void evict() throws IOException {
+        val cacheFiles = new ArrayList<Path>();
+        val lastUses = new HashMap<Path, Long>();
+        long totalSize = 0;
+
+        try (val stream = Files.newDirectoryStream(directory,
+                "*" + CACHE_FILE_SUFFIX)) {
+            for (val cacheFile : stream) {
+                try {
+                    val attributes = Files.readAttributes(cacheFile,
+                            BasicFileAttributes.class);
+
+                    cacheFiles.add(cacheFile);
+                    lastUses.put(cacheFile,
+                            attributes.lastModifiedTime().toMillis());
+
+                    totalSize += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // the file is deleted by another process
+                }
+            }
+        }
+
+        cacheFiles.sort(Comparator.comparing(lastUses::get));
+
+        for (val cacheFile : cacheFiles) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+
+            long size;
+
+            try {
+                size = Files.size(cacheFile);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+
+            Files.deleteIfExists(cacheFile);
+
+            totalSize -= size;
+        }
+    }
+
+    // the modification time of a cache file is its last use for the eviction
+    private void touch(Path cacheFile) {
+        try {
+            Files.setLastModifiedTime(cacheFile,
+                    FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // the file is evicted earlier than necessary
+        }
+    }
+
+    private static int checksum(ByteBuffer table) {
+        val crc32c = new CRC32C();
+        crc32c.update(table.duplicate());
+
+        return (int) crc32c.getValue();
+    }
+
+    private Path getCacheFile(File archive) throws IOException {
+        try {
+            val digest = MessageDigest.getInstance("SHA-256").digest(
+                    archive.getCanonicalPath().getBytes(
+                            StandardCharsets.UTF_8));
+
+            val name = new StringBuilder();
+
+            for (val b : digest) {
+                name.append(String.format("%02x", b));
+            }
+
+            return directory.resolve(name.append(CACHE_FILE_SUFFIX)
+                    .toString());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long[] getFingerprint(File archive) throws IOException {
+        val attributes = Files.readAttributes(archive.toPath(),
+                BasicFileAttributes.class);
+
+        return new long[]{attributes.size(),
+                attributes.lastModifiedTime().toMillis()};
+    }
+
+    private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the index entries of an archive, reading and decoding them
+ * lazily in chunks.
+ * <p>
+ * Only one chunk of the index is kept in memory, so the first entries are
+ * available as soon as the first chunk is read, regardless of the count of
+ * entries in the archive.
+ *
+ * @author Artyom Mameev
+ */
+final class IndexIterator implements Iterator<Resource> {
+
+    static final int CHUNK_ENTRIES = 1024;
+
+    private final FileChannel source;
+    private final int count;
+    private final ByteBuffer chunk = ByteBuffer.allocate(
+            CHUNK_ENTRIES * PsFsV1Index.ENTRY_SIZE);
+    private int index = 0;
+
+    /**
+     * Instantiates a new IndexIterator.
+     *
+     * @param source the archive channel.
+     * @param count  the count of entries in the index.
+     */
+    IndexIterator(FileChannel source, int count) {
+        this.source = source;
+        this.count = count;
+
+        chunk.limit(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < count;
+    }
+
+    /**
+     * Returns the next {@link Resource} of the index.
+     *
+     * @return the next {@link Resource}.
+     * @throws NoSuchElementException   if there are no more entries.
+     * @throws UncheckedIOException     if the index cannot be read.
+     * @throws IllegalArgumentException if the entry is invalid.
+     */
+    @Override
+    public Resource next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        if (!chunk.hasRemaining()) {
+            readChunk();
+        }
+
+        Resource resource = PsFsV1Index.decodeEntry(chunk, chunk.position());
+
+        chunk.position(chunk.position() + PsFsV1Index.ENTRY_SIZE);
+        index++;
+
+        return resource;
+    }
+
+    private void readChunk() {
+        int entries = Math.min(CHUNK_ENTRIES, count - index);
+        long position = PsFsV1Header.SIZE +
+                (long) index * PsFsV1Index.ENTRY_SIZE;
+
+        chunk.clear().limit(entries * PsFsV1Index.ENTRY_SIZE);
+
+        try {
+            while (chunk.hasRemaining()) {
+                int read = source.read(chunk, position);
+
+                if (read == -1) {
+                    break;
+                }
+
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // the entries before the end of a truncated index are still
+        // returned, the error is reported at the first missing entry
+        if (chunk.position() < PsFsV1Index.ENTRY_SIZE)
+            throw new UncheckedIOException(new EOFException(
+                    "End of file is reached."));
+
+        chunk.limit(chunk.position() - chunk.position() %
+                PsFsV1Index.ENTRY_SIZE);
+        chunk.flip();
+    }
+}
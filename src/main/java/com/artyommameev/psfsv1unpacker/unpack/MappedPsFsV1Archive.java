@@ -0,0 +1,115 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Provides zero-copy access to {@link Resource}s of a 'PS_FS_V1' archive.
+ * <p>
+ * The whole archive is mapped into memory once, the index is parsed directly
+ * from the mapping, and the data of every resource is exposed as a read-only
+ * {@link ByteBuffer} view of the mapping, so inspecting or hashing the
+ * resources does not copy them to the heap.
+ * <p>
+ * The mapping does not hold the archive file open and is released when the
+ * archive and all the returned buffers are garbage-collected.
+ *
+ * @author Artyom Mameev
+ */
+public class MappedPsFsV1Archive {
+
+    private final MappedByteBuffer buffer;
+    private final ResourceTable resourceTable;
+
+    /**
+     * Maps a 'PS_FS_V1' archive into memory and parses its index.
+     *
+     * @param file the 'PS_FS_V1' archive.
+     * @throws NullPointerException     if the file is null.
+     * @throws IllegalArgumentException if the file has a wrong header, or if
+     *                                  an index entry is invalid.
+     * @throws IOException              if the file is corrupted, or if the
+     *                                  file is too large to be mapped.
+     */
+    public MappedPsFsV1Archive(@NonNull File file) throws IOException {
+        @Cleanup val fileChannel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+
+        if (fileChannel.size() > Integer.MAX_VALUE)
+            throw new IOException("File is too large to be mapped");
+
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                fileChannel.size());
+
+        if (buffer.capacity() < PsFsV1Header.SIZE)
+            throw new EOFException("End of file is reached.");
+
+        byte[] headerBytes = new byte[PsFsV1Header.SIZE];
+        buffer.duplicate().get(headerBytes);
+
+        val header = PsFsV1Header.parse(headerBytes);
+
+        try {
+            resourceTable = PsFsV1Index.decode(
+                    buffer.duplicate().position(PsFsV1Header.SIZE),
+                    header.getResourceCount());
+        } catch (IndexOutOfBoundsException e) {
+            throw new EOFException("End of file is reached.");
+        }
+    }
+
+    /**
+     * Returns all {@link Resource}s in the archive.
+     *
+     * @return the unmodifiable list of all {@link Resource}s in the archive
+     * file.
+     */
+    public List<Resource> getAllResources() {
+        return resourceTable.asList();
+    }
+
+    /**
+     * Returns the compact table of all {@link Resource}s in the archive.
+     *
+     * @return the table of all {@link Resource}s in the archive file.
+     */
+    public ResourceTable getResourceTable() {
+        return resourceTable;
+    }
+
+    /**
+     * Returns the data of a {@link Resource} as a read-only view of the
+     * mapped archive.
+     * <p>
+     * The returned buffer is independent of other returned buffers, its
+     * position is zero and its limit is the size of the resource.
+     *
+     * @param resource the {@link Resource} whose data should be returned.
+     * @return the read-only buffer with the resource data.
+     * @throws NullPointerException if the resource is null.
+     * @throws IOException          if the resource is out of the file bounds.
+     */
+    public ByteBuffer getResourceData(@NonNull Resource resource)
+            throws IOException {
+        if ((long) resource.getOffset() + resource.getSize() >
+                buffer.capacity())
+            throw new EOFException("End of file is reached.");
+
+        return buffer.duplicate()
+                .position(resource.getOffset())
+                .limit(resource.getOffset() + resource.getSize())
+                .slice()
+                .asReadOnlyBuffer();
+    }
+}
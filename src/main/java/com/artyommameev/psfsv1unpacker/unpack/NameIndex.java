@@ -0,0 +1,489 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.regex.Pattern;
+
+/**
+ * A trigram index over the names of the {@link Resource}s of a
+ * {@link ResourceTable}, which finds resources by a part of their name.
+ * <p>
+ * A query is either a substring of the names, or a glob if it contains
+ * {@code *} (any characters) or {@code ?} (one character), which has to
+ * match the whole name. Queries are case-insensitive.
+ * <p>
+ * For every three consecutive characters of the lower-cased names, the
+ * index stores the sorted list of the resources containing them. A query
+ * intersects the lists of the trigrams of its literal parts, and only the
+ * remaining candidates are compared with the query. Queries without a
+ * literal part of three characters compare all names. A result can also be
+ * refined by a longer query, which compares only the previous matches, so
+ * the results can be updated as the user types.
+ * <p>
+ * The index is immutable and safe for use by multiple threads.
+ *
+ * @author Artyom Mameev
+ */
+public final class NameIndex {
+
+    private static final int[] NO_MATCHES = new int[0];
+
+    private final ResourceTable resourceTable;
+    private final TrigramMap trigrams;
+    private final int[] postingOffsets;
+    private final int[] postings;
+
+    private NameIndex(ResourceTable resourceTable, TrigramMap trigrams,
+                      int[] postingOffsets, int[] postings) {
+        this.resourceTable = resourceTable;
+        this.trigrams = trigrams;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds the index of the names of a table.
+     * <p>
+     * Every name is decoded once. Building the index of a large archive
+     * takes time, so it should not be done in a user interface thread.
+     *
+     * @param resourceTable the table of the resources.
+     * @return the built index.
+     * @throws NullPointerException if the table is null.
+     */
+    public static NameIndex build(@NonNull ResourceTable resourceTable) {
+        val trigrams = new TrigramMap();
+        val lists = new ArrayList<int[]>();
+        val listSizes = new IntList();
+
+        for (int i = 0; i < resourceTable.size(); i++) {
+            val name = lowerCase(resourceTable.getName(i));
+
+            for (int j = 0; j + 3 <= name.length(); j++) {
+                int id = trigrams.putIfAbsent(trigram(name, j), lists.size());
+
+                if (id == lists.size()) {
+                    lists.add(new int[4]);
+                    listSizes.add(0);
+                }
+
+                int size = listSizes.get(id);
+                int[] list = lists.get(id);
+
+                // a trigram repeated in a name is stored once
+                if (size > 0 && list[size - 1] == i) {
+                    continue;
+                }
+
+                if (size == list.length) {
+                    list = Arrays.copyOf(list, size * 2);
+                    lists.set(id, list);
+                }
+
+                list[size] = i;
+                listSizes.set(id, size + 1);
+            }
+        }
+
+        // the lists are packed into one array to not keep their slack
+        int[] postingOffsets = new int[lists.size() + 1];
+
+        for (int id = 0; id < lists.size(); id++) {
+            postingOffsets[id + 1] = postingOffsets[id] + listSizes.get(id);
+        }
+
+        int[] postings = new int[postingOffsets[lists.size()]];
+
+        for (int id = 0; id < lists.size(); id++) {
+            System.arraycopy(lists.get(id), 0, postings, postingOffsets[id],
+                    listSizes.get(id));
+        }
+
+        return new NameIndex(resourceTable, trigrams, postingOffsets,
+                postings);
+    }
+
+    /**
+     * Finds the resources whose names match a query.
+     *
+     * @param query the substring or the glob.
+     * @return the result with the matching resources in the order of the
+     * table.
+     * @throws NullPointerException if the query is null.
+     */
+    public Result search(@NonNull String query) {
+        val matcher = new QueryMatcher(query);
+        val ids = new IntList();
+
+        for (val literal : matcher.literals) {
+            for (int i = 0; i + 3 <= literal.length(); i++) {
+                int id = trigrams.get(trigram(literal, i));
+
+                if (id == -1) {
+                    return new Result(query, NO_MATCHES);
+                }
+
+                ids.add(id);
+            }
+        }
+
+        if (ids.size == 0) {
+            return new Result(query, filterAll(matcher));
+        }
+
+        // the shortest list bounds the candidates, so it is intersected
+        // first and the intersections stay small
+        int[] sortedIds = ids.toArray();
+        sortByPostingCount(sortedIds);
+
+        int[] candidates = Arrays.copyOfRange(postings,
+                postingOffsets[sortedIds[0]],
+                postingOffsets[sortedIds[0] + 1]);
+        int count = candidates.length;
+
+        for (int i = 1; i < sortedIds.length && count > 0; i++) {
+            count = intersect(candidates, count, sortedIds[i]);
+        }
+
+        return new Result(query, filter(candidates, count, matcher));
+    }
+
+    /**
+     * Returns the table of the indexed resources.
+     *
+     * @return the table of the indexed resources.
+     */
+    public ResourceTable getResourceTable() {
+        return resourceTable;
+    }
+
+    private void sortByPostingCount(int[] ids) {
+        // queries have a few trigrams, so an insertion sort is enough
+        for (int i = 1; i < ids.length; i++) {
+            int id = ids[i];
+            int j = i - 1;
+
+            for (; j >= 0 && getPostingCount(ids[j]) > getPostingCount(id);
+                 j--) {
+                ids[j + 1] = ids[j];
+            }
+
+            ids[j + 1] = id;
+        }
+    }
+
+    private int getPostingCount(int id) {
+        return postingOffsets[id + 1] - postingOffsets[id];
+    }
+
+    // intersects the candidates in place with the list of a trigram and
+    // returns the count of the remaining candidates
+    private int intersect(int[] candidates, int count, int id) {
+        int end = postingOffsets[id + 1];
+        int result = 0;
+
+        for (int i = 0, j = postingOffsets[id]; i < count && j < end; ) {
+            if (candidates[i] < postings[j]) {
+                i++;
+            } else if (candidates[i] > postings[j]) {
+                j++;
+            } else {
+                candidates[result++] = candidates[i];
+
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    private int[] filter(int[] candidates, int count, QueryMatcher matcher) {
+        int[] matches = new int[count];
+        int matchCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (matcher.matches(lowerCase(resourceTable.getName(
+                    candidates[i])))) {
+                matches[matchCount++] = candidates[i];
+            }
+        }
+
+        return Arrays.copyOf(matches, matchCount);
+    }
+
+    private int[] filterAll(QueryMatcher matcher) {
+        val matches = new IntList();
+
+        for (int i = 0; i < resourceTable.size(); i++) {
+            if (matcher.matches(lowerCase(resourceTable.getName(i)))) {
+                matches.add(i);
+            }
+        }
+
+        return matches.toArray();
+    }
+
+    private static long trigram(String string, int index) {
+        return (long) string.charAt(index) << 32 |
+                (long) string.charAt(index + 1) << 16 |
+                string.charAt(index + 2);
+    }
+
+    // the characters are lower-cased one by one, so that the trigrams of a
+    // name and of a query always line up
+    private static String lowerCase(String string) {
+        char[] chars = string.toCharArray();
+
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * The resources found by a query.
+     */
+    public final class Result {
+
+        @Getter
+        private final String query;
+        private final int[] matches;
+
+        private Result(String query, int[] matches) {
+            this.query = query;
+            this.matches = matches;
+        }
+
+        /**
+         * Returns the count of the matching resources.
+         *
+         * @return the count of the matching resources.
+         */
+        public int size() {
+            return matches.length;
+        }
+
+        /**
+         * Returns the index of a matching resource in the table.
+         *
+         * @param index the index of the match.
+         * @return the index of the resource in the table.
+         * @throws IndexOutOfBoundsException if the index is out of range.
+         */
+        public int getTableIndex(int index) {
+            return matches[index];
+        }
+
+        /**
+         * Returns a list view of the matching resources, which creates the
+         * {@link Resource}s on access.
+         *
+         * @return the unmodifiable list of the matching resources.
+         */
+        public List<Resource> getResources() {
+            return new MatchList();
+        }
+
+        /**
+         * Finds the resources that match a new query.
+         * <p>
+         * If both queries are substrings and the new one contains this one,
+         * only the matches of this result are compared with the new query,
+         * otherwise the whole index is searched.
+         *
+         * @param newQuery the new substring or glob.
+         * @return the result of the new query.
+         * @throws NullPointerException if the query is null.
+         */
+        public Result refine(@NonNull String newQuery) {
+            if (QueryMatcher.isGlob(query) || QueryMatcher.isGlob(newQuery) ||
+                    !lowerCase(newQuery).contains(lowerCase(query))) {
+                return search(newQuery);
+            }
+
+            return new Result(newQuery, filter(matches, matches.length,
+                    new QueryMatcher(newQuery)));
+        }
+
+        private class MatchList extends AbstractList<Resource>
+                implements RandomAccess {
+
+            @Override
+            public Resource get(int index) {
+                return resourceTable.get(matches[index]);
+            }
+
+            @Override
+            public int size() {
+                return matches.length;
+            }
+        }
+    }
+
+    /**
+     * Matches lower-cased names against a query and splits the query into
+     * the literal parts, whose trigrams every matching name contains.
+     */
+    private static final class QueryMatcher {
+
+        private final String substring;
+        private final Pattern pattern;
+        private final List<String> literals = new ArrayList<>();
+
+        private QueryMatcher(String query) {
+            val lowerCaseQuery = lowerCase(query);
+
+            if (!isGlob(query)) {
+                substring = lowerCaseQuery;
+                pattern = null;
+
+                literals.add(lowerCaseQuery);
+
+                return;
+            }
+
+            val regex = new StringBuilder();
+            val literal = new StringBuilder();
+
+            for (char c : lowerCaseQuery.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    regex.append(Pattern.quote(literal.toString()))
+                            .append(c == '*' ? ".*" : ".");
+
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                } else {
+                    literal.append(c);
+                }
+            }
+
+            regex.append(Pattern.quote(literal.toString()));
+            literals.add(literal.toString());
+
+            substring = null;
+            pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+
+        private static boolean isGlob(String query) {
+            return query.indexOf('*') != -1 || query.indexOf('?') != -1;
+        }
+
+        private boolean matches(String lowerCaseName) {
+            return pattern != null ? pattern.matcher(lowerCaseName).matches() :
+                    lowerCaseName.contains(substring);
+        }
+    }
+
+    /**
+     * A growable list of primitive ints.
+     */
+    private static final class IntList {
+
+        private int[] values = new int[16];
+        private int size = 0;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private void set(int index, int value) {
+            values[index] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * An open-addressing map from trigrams to their ids, which does not box
+     * the keys.
+     */
+    private static final class TrigramMap {
+
+        private long[] keys = new long[1024];
+        private int[] ids = new int[1024];
+        private int size = 0;
+
+        private TrigramMap() {
+            Arrays.fill(ids, -1);
+        }
+
+        private int get(long key) {
+            for (int slot = slot(key, keys.length); ;
+                 slot = (slot + 1) & (keys.length - 1)) {
+                if (ids[slot] == -1 || keys[slot] == key) {
+                    return ids[slot];
+                }
+            }
+        }
+
+        private int putIfAbsent(long key, int id) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+
+            for (int slot = slot(key, keys.length); ;
+                 slot = (slot + 1) & (keys.length - 1)) {
+                if (ids[slot] == -1) {
+                    keys[slot] = key;
+                    ids[slot] = id;
+                    size++;
+
+                    return id;
+                }
+
+                if (keys[slot] == key) {
+                    return ids[slot];
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldIds.length * 2];
+            Arrays.fill(ids, -1);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldIds[i] != -1) {
+                    for (int slot = slot(oldKeys[i], keys.length); ;
+                         slot = (slot + 1) & (keys.length - 1)) {
+                        if (ids[slot] == -1) {
+                            keys[slot] = oldKeys[i];
+                            ids[slot] = oldIds[i];
+
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static int slot(long key, int capacity) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+
+            return (int) (hash >>> 32) & (capacity - 1);
+        }
+    }
+}
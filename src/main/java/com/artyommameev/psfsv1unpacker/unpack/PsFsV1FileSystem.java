@@ -0,0 +1,339 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Merges multiple 'PS_FS_V1' archives into one namespace of resource names.
+ * <p>
+ * The archives are mounted in order, and a resource of a later archive
+ * overrides the resources with the same name of the earlier archives. Every
+ * archive is opened once and its index is parsed once; the winning location
+ * of every name is kept in one concurrent hash index, so resolving a name
+ * takes one lookup however many archives are mounted. The resources are read
+ * through the open channels of the archives with positional reads, so any
+ * number of threads can read them at once.
+ * <p>
+ * The file system is safe for use by multiple threads. Lookups that run
+ * concurrently with {@link #mount(File)} see every name either in its old or
+ * in its new location.
+ *
+ * @author Artyom Mameev
+ */
+public class PsFsV1FileSystem implements Closeable {
+
+    private final IndexCache indexCache;
+    private final List<PsFsV1Unpacker> archives = new CopyOnWriteArrayList<>();
+    private final List<File> archiveFiles = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Location> locations =
+            new ConcurrentHashMap<>();
+    private boolean closed = false;
+
+    /**
+     * Instantiates a new PsFsV1FileSystem and mounts archives in order.
+     *
+     * @param archives the 'PS_FS_V1' archives, from the lowest to the highest
+     *                 priority.
+     * @throws NullPointerException     if the archives or any of them are
+     *                                  null.
+     * @throws IllegalArgumentException if an archive has a wrong header, if
+     *                                  an index entry is invalid, or if an
+     *                                  archive is given twice.
+     * @throws IOException              if an archive is corrupted.
+     */
+    public PsFsV1FileSystem(@NonNull List<File> archives) throws IOException {
+        this(archives, null);
+    }
+
+    /**
+     * Instantiates a new PsFsV1FileSystem, which parses the indexes of the
+     * archives with an {@link IndexCache}, and mounts archives in order.
+     *
+     * @param archives   the 'PS_FS_V1' archives, from the lowest to the
+     *                   highest priority.
+     * @param indexCache the index cache, or null if indexes should always be
+     *                   parsed from the archives.
+     * @throws NullPointerException     if the archives or any of them are
+     *                                  null.
+     * @throws IllegalArgumentException if an archive has a wrong header, if
+     *                                  an index entry is invalid, or if an
+     *                                  archive is given twice.
+     * @throws IOException              if an archive is corrupted.
+     */
+    public PsFsV1FileSystem(@NonNull List<File> archives,
+                            IndexCache indexCache) throws IOException {
+        this.indexCache = indexCache;
+
+        try {
+            for (val archive : archives) {
+                mount(archive);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Mounts an archive over all mounted archives, so its resources override
+     * the resources with the same names.
+     * <p>
+     * If the archive contains several resources with the same name, the
+     * first one is used, as by {@link PsFsV1Unpacker#findResource(String)}.
+     *
+     * @param archive the 'PS_FS_V1' archive.
+     * @throws NullPointerException     if the archive is null.
+     * @throws IllegalArgumentException if the archive has a wrong header, if
+     *                                  an index entry is invalid, or if the
+     *                                  archive is already mounted.
+     * @throws IllegalStateException    if the file system is closed.
+     * @throws IOException              if the archive is corrupted.
+     */
+    public synchronized void mount(@NonNull File archive) throws IOException {
+        if (closed)
+            throw new IllegalStateException("File system is closed");
+
+        val file = archive.getCanonicalFile();
+
+        if (archiveFiles.contains(file))
+            throw new IllegalArgumentException("Archive is already mounted: " +
+                    archive);
+
+        val unpacker = new PsFsV1Unpacker(file, indexCache);
+        ResourceTable table;
+
+        try {
+            table = unpacker.getResourceTable();
+        } catch (IOException | RuntimeException e) {
+            unpacker.close();
+
+            throw e;
+        }
+
+        // the archive is added before its names, so that every location
+        // that a lookup can see refers to an added archive
+        int archiveIndex = archives.size();
+
+        archives.add(unpacker);
+        archiveFiles.add(file);
+
+        // the names are put backwards, so the first duplicate wins
+        for (int i = table.size() - 1; i >= 0; i--) {
+            locations.put(table.getName(i), new Location(archiveIndex,
+                    table.getSize(i), table.getOffset(i)));
+        }
+    }
+
+    /**
+     * Returns the mounted archives, from the lowest to the highest priority.
+     *
+     * @return the unmodifiable list of the canonical files of the archives.
+     */
+    public List<File> getArchives() {
+        return Collections.unmodifiableList(archiveFiles);
+    }
+
+    /**
+     * Returns the names of all resources of the merged namespace.
+     *
+     * @return the unmodifiable set view of the names.
+     */
+    public Set<String> getResourceNames() {
+        return Collections.unmodifiableSet(locations.keySet());
+    }
+
+    /**
+     * Returns the count of resources of the merged namespace, in which every
+     * overridden resource is counted once.
+     *
+     * @return the count of resources.
+     */
+    public int getResourceCount() {
+        return locations.size();
+    }
+
+    /**
+     * Checks whether any mounted archive contains a resource with the given
+     * name.
+     *
+     * @param name the name of the resource.
+     * @return true if the namespace contains the name.
+     * @throws NullPointerException if the name is null.
+     */
+    public boolean containsResource(@NonNull String name) {
+        return locations.containsKey(name);
+    }
+
+    /**
+     * Finds the resource with the given name in the archive that provides
+     * it.
+     * <p>
+     * The offset of the returned {@link Resource} is an offset in the
+     * archive returned by {@link #findArchive(String)}.
+     *
+     * @param name the name of the resource.
+     * @return the resource, or null if no archive contains the name.
+     * @throws NullPointerException if the name is null.
+     */
+    public Resource findResource(@NonNull String name) {
+        val location = locations.get(name);
+
+        return location != null ? location.toResource(name) : null;
+    }
+
+    /**
+     * Finds the archive that provides the resource with the given name,
+     * which is the last mounted archive that contains the name.
+     *
+     * @param name the name of the resource.
+     * @return the canonical file of the archive, or null if no archive
+     * contains the name.
+     * @throws NullPointerException if the name is null.
+     */
+    public File findArchive(@NonNull String name) {
+        val location = locations.get(name);
+
+        return location != null ? archiveFiles.get(location.archive) : null;
+    }
+
+    /**
+     * Reads the data of a resource into a buffer.
+     * <p>
+     * The data is written at the position of the buffer, which is advanced
+     * by the size of the resource.
+     *
+     * @param name   the name of the resource.
+     * @param target the buffer into which the data should be read.
+     * @throws NoSuchFileException      if no archive contains the name.
+     * @throws IOException              if the archive is corrupted or the
+     *                                  file system is closed.
+     * @throws NullPointerException     if the name or the target is null.
+     * @throws IllegalArgumentException if the resource does not fit into the
+     *                                  remaining space of the buffer.
+     */
+    public void readResource(@NonNull String name, @NonNull ByteBuffer target)
+            throws IOException {
+        val location = getLocation(name);
+
+        archives.get(location.archive).readResource(location.toResource(name),
+                target);
+    }
+
+    /**
+     * Opens a channel to read the data of a resource.
+     * <p>
+     * Closing the channel does not close the archive, but the channel stops
+     * working when the file system is closed.
+     *
+     * @param name the name of the resource.
+     * @return the channel with the data of the resource.
+     * @throws NoSuchFileException  if no archive contains the name.
+     * @throws IOException          if the file system is closed.
+     * @throws NullPointerException if the name is null.
+     */
+    public ReadableByteChannel openResource(@NonNull String name)
+            throws IOException {
+        val location = getLocation(name);
+
+        return archives.get(location.archive).openResource(
+                location.toResource(name));
+    }
+
+    /**
+     * Unpacks a resource to a channel. The target channel is not closed.
+     *
+     * @param name   the name of the resource.
+     * @param target the channel to which the resource should be written.
+     * @throws NoSuchFileException  if no archive contains the name.
+     * @throws IOException          if the archive is corrupted or the file
+     *                              system is closed.
+     * @throws NullPointerException if the name or the target is null.
+     */
+    public void unpackResource(@NonNull String name,
+                               @NonNull WritableByteChannel target)
+            throws IOException {
+        val location = getLocation(name);
+
+        archives.get(location.archive).unpackResource(
+                location.toResource(name), target);
+    }
+
+    /**
+     * Closes all mounted archives. No archives can be mounted afterwards.
+     *
+     * @throws IOException if an archive cannot be closed. The failures of
+     *                     the other archives are added to it as suppressed
+     *                     exceptions.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+
+        IOException exception = null;
+
+        for (val archive : archives) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private Location getLocation(String name) throws NoSuchFileException {
+        val location = locations.get(name);
+
+        if (location == null)
+            throw new NoSuchFileException(name);
+
+        return location;
+    }
+
+    /**
+     * The location of a resource: the index of the archive and the size and
+     * the offset of the data in the archive.
+     */
+    private static final class Location {
+
+        private final int archive;
+        private final int size;
+        private final int offset;
+
+        private Location(int archive, int size, int offset) {
+            this.archive = archive;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        private Resource toResource(String name) {
+            return new Resource(name, size, offset);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.NonNull;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Encapsulates the immutable header of a 'PS_FS_V1' archive.
+ * <p>
+ * The header has the following layout:
+ * <pre>
+ * 8 bytes  signature ("PS_FS_V1")
+ * 4 bytes  resources count (little-endian)
+ * 4 bytes  separator
+ * </pre>
+ * The layout constants are public, so that the archive writers of the
+ * {@code pack} package share them.
+ *
+ * @author Artyom Mameev
+ */
+public final class PsFsV1Header {
+
+    public static final int SIZE = 16;
+    public static final int COUNT_POSITION = 8;
+
+    private static final byte[] CORRECT_SIGNATURE = {0x50, 0x53, 0x5F, 0x46,
+            0x53, 0x5F, 0x56, 0x31};
+
+    private final int resourceCount;
+    private final int checksum;
+
+    private PsFsV1Header(int resourceCount, int checksum) {
+        this.resourceCount = resourceCount;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Parses the header from its raw bytes.
+     *
+     * @param bytes the raw header bytes.
+     * @return the parsed header.
+     * @throws NullPointerException     if the bytes are null.
+     * @throws IllegalArgumentException if the bytes are not a valid
+     *                                  'PS_FS_V1' header.
+     */
+    static PsFsV1Header parse(@NonNull byte[] bytes) {
+        if (bytes.length != SIZE)
+            throw new IllegalArgumentException("Wrong Header");
+        if (!Arrays.equals(bytes, 0, CORRECT_SIGNATURE.length,
+                CORRECT_SIGNATURE, 0, CORRECT_SIGNATURE.length))
+            throw new IllegalArgumentException("Wrong Header");
+
+        int resourceCount = ByteBuffer.wrap(bytes)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .getInt(COUNT_POSITION);
+
+        if (resourceCount < 0)
+            throw new IllegalArgumentException("Wrong Header");
+
+        val crc32 = new CRC32();
+        crc32.update(bytes);
+
+        return new PsFsV1Header(resourceCount, (int) crc32.getValue());
+    }
+
+    int getResourceCount() {
+        return resourceCount;
+    }
+
+    /**
+     * Returns the CRC32 checksum of the raw header bytes.
+     *
+     * @return the checksum of the header.
+     */
+    int getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,229 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.NonNull;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes the index of a 'PS_FS_V1' archive.
+ * <p>
+ * The index directly follows the {@link PsFsV1Header} and consists of the
+ * entries with the following layout:
+ * <pre>
+ * 22 bytes  name (UTF-8, padded)
+ * 26 bytes  unused
+ * 4 bytes   size (little-endian, including the 16-byte resource header)
+ * 4 bytes   separator
+ * 4 bytes   offset (little-endian, of the 16-byte resource header)
+ * 4 bytes   separator
+ * </pre>
+ * The layout constants are public, so that the archive writers of the
+ * {@code pack} package share them.
+ *
+ * @author Artyom Mameev
+ */
+public final class PsFsV1Index {
+
+    public static final int ENTRY_SIZE = 64;
+    public static final int NAME_SIZE = 22;
+    public static final int SIZE_POSITION = 48;
+    public static final int OFFSET_POSITION = 56;
+    public static final int USELESS_HEADER_SIZE = 16;
+
+    private PsFsV1Index() {
+    }
+
+    /**
+     * Decodes index entries starting at the current position of the buffer
+     * into a {@link ResourceTable}. The position of the buffer is not
+     * changed.
+     * <p>
+     * The names are trimmed the same way as {@link String#trim()} does, but
+     * on the raw bytes, so ASCII names are not decoded while the table is
+     * built. Other names are stored as they are decoded: a name that is not
+     * valid UTF-8, for example because the name field cuts a multibyte
+     * character, is decoded with replacement characters, and the table
+     * stores the encoding of the decoded name, so that the name returned by
+     * the table can be looked up.
+     *
+     * @param buffer the buffer containing the index entries.
+     * @param count  the count of entries to decode.
+     * @return the table of decoded {@link Resource}s.
+     * @throws NullPointerException      if the buffer is null.
+     * @throws IndexOutOfBoundsException if the buffer does not contain all
+     *                                   the entries.
+     * @throws IllegalArgumentException  if an entry has an empty name, or if
+     *                                   its size or offset is <= 0.
+     */
+    static ResourceTable decode(@NonNull ByteBuffer buffer, int count) {
+        if ((long) count * ENTRY_SIZE > buffer.remaining())
+            throw new IndexOutOfBoundsException("Index is truncated");
+
+        val cursor = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        int[] sizes = new int[count];
+        int[] offsets = new int[count];
+        int[] nameOffsets = new int[count + 1];
+        byte[] names = new byte[count * NAME_SIZE];
+
+        int namesLength = 0;
+
+        for (int i = 0; i < count; i++) {
+            int entryPosition = buffer.position() + i * ENTRY_SIZE;
+
+            int nameStart = getNameStart(cursor, entryPosition);
+            int nameEnd = getNameEnd(cursor, entryPosition, nameStart);
+
+            if (nameStart == nameEnd)
+                throw new IllegalArgumentException("Name cannot be empty");
+
+            byte[] name = new byte[nameEnd - nameStart];
+
+            cursor.position(nameStart);
+            cursor.get(name);
+
+            if (!isAscii(name)) {
+                name = new String(name, StandardCharsets.UTF_8)
+                        .getBytes(StandardCharsets.UTF_8);
+
+                // the replacement characters are longer than the bytes
+                if (namesLength + name.length > names.length) {
+                    names = Arrays.copyOf(names, Math.max(names.length * 2,
+                            namesLength + name.length));
+                }
+            }
+
+            System.arraycopy(name, 0, names, namesLength, name.length);
+
+            namesLength += name.length;
+            nameOffsets[i + 1] = namesLength;
+
+            sizes[i] = cursor.getInt(entryPosition + SIZE_POSITION) -
+                    USELESS_HEADER_SIZE;
+
+            if (sizes[i] <= 0)
+                throw new IllegalArgumentException("Size cannot be <= 0");
+
+            offsets[i] = cursor.getInt(entryPosition + OFFSET_POSITION) +
+                    USELESS_HEADER_SIZE;
+
+            if (offsets[i] <= 0)
+                throw new IllegalArgumentException("Offset cannot be <= 0");
+        }
+
+        return new ResourceTable(sizes, offsets, nameOffsets,
+                Arrays.copyOf(names, namesLength));
+    }
+
+    /**
+     * Decodes a single index entry into a {@link Resource}.
+     * <p>
+     * The entry is decoded and validated the same way as by
+     * {@link #decode(ByteBuffer, int)}.
+     *
+     * @param buffer        the buffer containing the index entry.
+     * @param entryPosition the absolute position of the entry in the buffer.
+     * @return the decoded {@link Resource}.
+     * @throws NullPointerException      if the buffer is null.
+     * @throws IndexOutOfBoundsException if the buffer does not contain the
+     *                                   whole entry.
+     * @throws IllegalArgumentException  if the entry has an empty name, or if
+     *                                   its size or offset is <= 0.
+     */
+    static Resource decodeEntry(@NonNull ByteBuffer buffer, int entryPosition) {
+        val entry = decodeRawEntry(buffer, entryPosition);
+
+        return new Resource(entry.name, (int) entry.size,
+                (int) entry.offset);
+    }
+
+    /**
+     * Decodes a single index entry without validating it.
+     * <p>
+     * The size and the offset are adjusted by the size of the resource
+     * header in long arithmetic, so they are never overflowed and may be
+     * negative.
+     *
+     * @param buffer        the buffer containing the index entry.
+     * @param entryPosition the absolute position of the entry in the buffer.
+     * @return the decoded entry.
+     * @throws NullPointerException      if the buffer is null.
+     * @throws IndexOutOfBoundsException if the buffer does not contain the
+     *                                   whole entry.
+     */
+    static RawEntry decodeRawEntry(@NonNull ByteBuffer buffer,
+                                   int entryPosition) {
+        val cursor = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        int nameStart = getNameStart(cursor, entryPosition);
+        int nameEnd = getNameEnd(cursor, entryPosition, nameStart);
+
+        byte[] name = new byte[nameEnd - nameStart];
+
+        cursor.position(nameStart);
+        cursor.get(name);
+
+        return new RawEntry(new String(name, StandardCharsets.UTF_8),
+                (long) cursor.getInt(entryPosition + SIZE_POSITION) -
+                        USELESS_HEADER_SIZE,
+                (long) cursor.getInt(entryPosition + OFFSET_POSITION) +
+                        USELESS_HEADER_SIZE);
+    }
+
+    private static int getNameStart(ByteBuffer cursor, int entryPosition) {
+        int nameStart = entryPosition;
+
+        while (nameStart < entryPosition + NAME_SIZE &&
+                isTrimmed(cursor.get(nameStart))) {
+            nameStart++;
+        }
+
+        return nameStart;
+    }
+
+    private static int getNameEnd(ByteBuffer cursor, int entryPosition,
+                                  int nameStart) {
+        int nameEnd = entryPosition + NAME_SIZE;
+
+        while (nameEnd > nameStart && isTrimmed(cursor.get(nameEnd - 1))) {
+            nameEnd--;
+        }
+
+        return nameEnd;
+    }
+
+    private static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isTrimmed(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    /**
+     * An index entry as it is stored in the archive, which may be invalid.
+     */
+    static final class RawEntry {
+
+        final String name;
+        final long size;
+        final long offset;
+
+        private RawEntry(String name, long size, long offset) {
+            this.name = name;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+}
@@ -1,43 +1,52 @@
 package com.artyommameev.psfsv1unpacker.unpack;
 
 import com.artyommameev.psfsv1unpacker.domain.Resource;
-import lombok.Cleanup;
 import lombok.NonNull;
 import lombok.val;
 
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Unpacks {@link Resource}s from a 'PS_FS_V1' archive.
+ * <p>
+ * The archive is read through a single {@link FileChannel}, which is opened by
+ * the constructor and reused until the unpacker is closed.
  *
  * @author Artyom Mameev
  */
-public class PsFsV1Unpacker {
+public class PsFsV1Unpacker implements Closeable {
 
-    private final static byte[] HEADER = new byte[8];
-    private final static byte[] RESOURCES_COUNT = new byte[4];
-    private final static byte[] SEPARATOR = new byte[4];
-    private final static byte[] BUFFER = new byte[26];
-
-    private final static byte[] CORRECT_HEADER = {0x50, 0x53, 0x5F, 0x46, 0x53,
-            0x5F, 0x56, 0x31};
-
-    private final static int USELESS_HEADER_SIZE = 16;
+    // the size of the chunks between the checks for cancellation
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
     private final File file;
-    private final DataInputStream dataInputStream;
-    private List<Resource> resources;
+    private final IndexCache indexCache;
+    private final FileChannel fileChannel;
+    private final PsFsV1Header header;
+    private ResourceTable resourceTable;
+    private NameIndex nameIndex;
+    private volatile ExtractionListener extractionListener =
+            ExtractionListener.NONE;
 
     /**
      * Instantiates a new PsFsV1Unpacker.
+     * <p>
+     * All parsing state is kept in the instance, so multiple archives can be
+     * opened and read concurrently.
      *
      * @param file the 'PS_FS_V1' archive.
      * @throws NullPointerException     if the file is null.
@@ -45,72 +54,184 @@ public class PsFsV1Unpacker {
      * @throws IOException              if the file header is corrupted.
      */
     public PsFsV1Unpacker(@NonNull File file) throws java.io.IOException {
+        this(file, null);
+    }
+
+    /**
+     * Instantiates a new PsFsV1Unpacker, which loads the parsed index from an
+     * {@link IndexCache} and stores it there after parsing.
+     * <p>
+     * The cache is an optimization only: if it cannot be read or written,
+     * the index is parsed from the archive.
+     *
+     * @param file       the 'PS_FS_V1' archive.
+     * @param indexCache the index cache, or null if the index should always
+     *                   be parsed from the archive.
+     * @throws NullPointerException     if the file is null.
+     * @throws IllegalArgumentException if the file has a wrong header.
+     * @throws IOException              if the file header is corrupted.
+     */
+    public PsFsV1Unpacker(@NonNull File file, IndexCache indexCache)
+            throws java.io.IOException {
         this.file = file;
+        this.indexCache = indexCache;
+
+        fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
 
-        dataInputStream = new DataInputStream(new FileInputStream(file));
+        try {
+            val headerBuffer = ByteBuffer.allocate(PsFsV1Header.SIZE);
 
-        if (dataInputStream.read(HEADER) == -1)
-            throw new IOException("End of file is reached");
-        if (!Arrays.equals(HEADER, CORRECT_HEADER))
-            throw new IllegalArgumentException("Wrong Header");
-        if (dataInputStream.read(RESOURCES_COUNT) == -1)
-            throw new IOException("End of file is reached");
-        if (dataInputStream.read(SEPARATOR) == -1)
-            throw new IOException("End of file is reached");
+            readFully(headerBuffer, 0);
+
+            header = PsFsV1Header.parse(headerBuffer.array());
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+
+            throw e;
+        }
     }
 
     /**
      * Returns all {@link Resource}s in the archive.
+     * <p>
+     * The returned list is a view of the {@link ResourceTable}, which creates
+     * the {@link Resource}s on access.
      *
-     * @return the list of all {@link Resource}s in the archive file.
+     * @return the unmodifiable list of all {@link Resource}s in the archive
+     * file.
      * @throws IOException if the file is corrupted.
      */
     public List<Resource> getAllResources() throws java.io.IOException {
-        if (resources != null) {
-            return resources;
+        return getResourceTable().asList();
+    }
+
+    /**
+     * Returns the compact table of all {@link Resource}s in the archive.
+     * <p>
+     * On the first call the table is loaded from the {@link IndexCache}, if
+     * there is one, or the whole index is read with a single bulk read and
+     * decoded in memory.
+     *
+     * @return the table of all {@link Resource}s in the archive file.
+     * @throws IOException              if the file is corrupted.
+     * @throws IllegalArgumentException if an index entry is invalid.
+     */
+    public synchronized ResourceTable getResourceTable()
+            throws java.io.IOException {
+        if (resourceTable != null) {
+            return resourceTable;
+        }
+
+        long startTime = System.nanoTime();
+
+        resourceTable = loadCachedResourceTable();
+
+        if (resourceTable == null) {
+            resourceTable = readResourceTable();
+
+            storeCachedResourceTable();
         }
 
-        resources = new ArrayList<>();
-
-        for (int i = 0; i < getResourceCount(); i++) {
-            byte[] nameBytes = new byte[22];
-            byte[] sizeBytes = new byte[4];
-            byte[] offsetBytes = new byte[4];
-
-            if (dataInputStream.read(nameBytes) == -1)
-                throw new IOException("End of file is reached.");
-            if (dataInputStream.read(BUFFER) == -1)
-                throw new IOException("End of file is reached.");
-            if (dataInputStream.read(sizeBytes) == -1)
-                throw new IOException("End of file is reached.");
-            if (dataInputStream.read(SEPARATOR) == -1)
-                throw new IOException("End of file is reached.");
-            if (dataInputStream.read(offsetBytes) == -1)
-                throw new IOException("End of file is reached.");
-            if (dataInputStream.read(SEPARATOR) == -1)
-                throw new IOException("End of file is reached.");
-
-            val name = new String(nameBytes, StandardCharsets.UTF_8)
-                    .trim();
-
-            int size = ByteBuffer.wrap(sizeBytes)
-                    .order(ByteOrder.LITTLE_ENDIAN)
-                    .getInt() - USELESS_HEADER_SIZE;
-
-            int offset = ByteBuffer.wrap(offsetBytes)
-                    .order(ByteOrder.LITTLE_ENDIAN)
-                    .getInt() + USELESS_HEADER_SIZE;
-
-            resources.add(new Resource(name, size, offset));
+        extractionListener.indexParsed(resourceTable.size(),
+                System.nanoTime() - startTime);
+
+        return resourceTable;
+    }
+
+    /**
+     * Returns the {@link NameIndex} of the names of all {@link Resource}s in
+     * the archive, which is built on the first call.
+     *
+     * @return the name index of the archive.
+     * @throws IOException              if the file is corrupted.
+     * @throws IllegalArgumentException if an index entry is invalid.
+     */
+    public synchronized NameIndex getNameIndex() throws java.io.IOException {
+        if (nameIndex == null) {
+            nameIndex = NameIndex.build(getResourceTable());
         }
 
-        dataInputStream.close();
+        return nameIndex;
+    }
 
-        return resources;
+    /**
+     * Returns an iterator over all {@link Resource}s in the archive.
+     * <p>
+     * If the {@link ResourceTable} is not loaded yet, the index is read and
+     * decoded lazily in small chunks while iterating, so the first resources
+     * are available immediately regardless of the size of the archive, and
+     * an iteration that stops early does not read the rest of the index.
+     * Errors are reported by the iterator: an {@link UncheckedIOException}
+     * if the file is corrupted, or an {@link IllegalArgumentException} if an
+     * index entry is invalid.
+     *
+     * @return the iterator over all {@link Resource}s in the archive file.
+     */
+    public synchronized Iterator<Resource> iterateResources() {
+        if (resourceTable != null) {
+            return resourceTable.asList().iterator();
+        }
+
+        return new IndexIterator(fileChannel, header.getResourceCount());
+    }
+
+    /**
+     * Returns a sequential stream of all {@link Resource}s in the archive.
+     * <p>
+     * The stream decodes the index lazily, see {@link #iterateResources()},
+     * so it can be filtered and short-circuited without decoding the whole
+     * index.
+     *
+     * @return the stream of all {@link Resource}s in the archive file.
+     */
+    public Stream<Resource> streamResources() {
+        return StreamSupport.stream(Spliterators.spliterator(
+                iterateResources(), header.getResourceCount(),
+                Spliterator.ORDERED | Spliterator.NONNULL |
+                        Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Finds the first {@link Resource} with the given name in the archive.
+     * <p>
+     * The lookup uses the hash index of the {@link ResourceTable} and takes
+     * constant time regardless of the count of resources.
+     *
+     * @param name the name of the {@link Resource}.
+     * @return the {@link Resource}, or null if the archive does not contain
+     * a resource with the given name.
+     * @throws IOException          if the file is corrupted.
+     * @throws NullPointerException if the name is null.
+     */
+    public Resource findResource(@NonNull String name)
+            throws java.io.IOException {
+        val table = getResourceTable();
+        int index = table.indexOf(name);
+
+        return index != -1 ? table.get(index) : null;
+    }
+
+    /**
+     * Checks whether the archive contains a {@link Resource} with the given
+     * name.
+     * <p>
+     * The check takes constant time and does not allocate.
+     *
+     * @param name the name of the {@link Resource}.
+     * @return true if the archive contains a resource with the given name.
+     * @throws IOException          if the file is corrupted.
+     * @throws NullPointerException if the name is null.
+     */
+    public boolean containsResource(@NonNull String name)
+            throws java.io.IOException {
+        return getResourceTable().indexOf(name) != -1;
     }
 
     /**
      * Unpacks a {@link Resource} to a selected directory.
+     * <p>
+     * If the resource cannot be unpacked completely, the partially written
+     * file is deleted.
      *
      * @param directory the directory to which the {@link Resource} should be
      *                  unpacked.
@@ -121,25 +242,363 @@ public class PsFsV1Unpacker {
     public void unpackResource(@NonNull File directory,
                                @NonNull Resource resource)
             throws java.io.IOException {
-        @Cleanup val randomAccessFile = new RandomAccessFile(file, "r");
+        unpackResource(directory, resource, () -> false);
+    }
 
-        byte[] data = new byte[resource.getSize()];
+    /**
+     * Unpacks a {@link Resource} to a channel.
+     * <p>
+     * The resource is streamed to the channel in chunks and is never
+     * materialized on the heap as a whole, so memory usage does not depend on
+     * the resource size. The target channel is not closed.
+     *
+     * @param resource the {@link Resource} that should be unpacked.
+     * @param target   the channel to which the {@link Resource} should be
+     *                 written.
+     * @throws IOException          if the file is corrupted.
+     * @throws NullPointerException if the resource or the target is null.
+     */
+    public void unpackResource(@NonNull Resource resource,
+                               @NonNull WritableByteChannel target)
+            throws java.io.IOException {
+        long startTime = System.nanoTime();
 
-        randomAccessFile.seek(resource.getOffset());
+        transfer(fileChannel, resource.getOffset(), resource.getSize(),
+                target, () -> false);
 
-        for (int i = 0; i < resource.getSize(); i++) {
-            data[i] = randomAccessFile.readByte();
+        long nanos = System.nanoTime() - startTime;
+
+        extractionListener.resourceUnpacked(resource, 0, nanos, nanos);
+    }
+
+    /**
+     * Reads the data of a {@link Resource} into a buffer.
+     * <p>
+     * The data is written at the position of the buffer, which is advanced
+     * by the size of the resource. Reading into a direct buffer does not copy
+     * the data through the heap.
+     *
+     * @param resource the {@link Resource} that should be read.
+     * @param target   the buffer into which the data should be read.
+     * @throws IOException              if the file is corrupted.
+     * @throws NullPointerException     if the resource or the target is null.
+     * @throws IllegalArgumentException if the resource does not fit into the
+     *                                  remaining space of the buffer.
+     */
+    public void readResource(@NonNull Resource resource,
+                             @NonNull ByteBuffer target)
+            throws java.io.IOException {
+        if (target.remaining() < resource.getSize())
+            throw new IllegalArgumentException("Buffer is too small");
+
+        int oldLimit = target.limit();
+
+        target.limit(target.position() + resource.getSize());
+
+        try {
+            readFully(target, resource.getOffset());
+        } finally {
+            target.limit(oldLimit);
         }
+    }
+
+    /**
+     * Opens a channel to read the data of a {@link Resource}.
+     * <p>
+     * The channel reads the archive directly and ends at the end of the
+     * resource, so the resource can be streamed through a buffer of any size.
+     * Closing the channel does not close the archive, but the channel stops
+     * working when the unpacker is closed. An {@link InputStream} can be
+     * obtained with {@link java.nio.channels.Channels#newInputStream}.
+     *
+     * @param resource the {@link Resource} that should be read.
+     * @return the channel with the data of the resource.
+     * @throws IOException          if the unpacker is closed.
+     * @throws NullPointerException if the resource is null.
+     */
+    public ReadableByteChannel openResource(@NonNull Resource resource)
+            throws java.io.IOException {
+        if (!fileChannel.isOpen())
+            throw new ClosedChannelException();
 
-        val path = Paths.get(directory + "/" + resource.getName());
+        return new ResourceChannel(fileChannel, resource.getOffset(),
+                resource.getSize());
+    }
 
-        Files.write(path, data);
+    /**
+     * Unpacks multiple {@link Resource}s to a selected directory.
+     * <p>
+     * This is a shortcut for creating and running an {@link ExtractionJob}.
+     *
+     * @param directory the directory to which the {@link Resource}s should be
+     *                  unpacked.
+     * @param resources the {@link Resource}s that should be unpacked.
+     * @param options   the extraction options.
+     * @throws IOException          if the file is corrupted, or if the
+     *                              unpacking is interrupted.
+     * @throws NullPointerException if the directory, the resources or the
+     *                              options are null.
+     * @see #createExtractionJob
+     */
+    public void unpackResources(@NonNull File directory,
+                                @NonNull Collection<Resource> resources,
+                                @NonNull ExtractionOptions options)
+            throws java.io.IOException {
+        createExtractionJob(directory, resources, options).run();
     }
 
-    private int getResourceCount() {
-        return ByteBuffer.wrap(RESOURCES_COUNT)
-                .order(ByteOrder.LITTLE_ENDIAN)
-                .getInt();
+    /**
+     * Creates a job that unpacks multiple {@link Resource}s to a selected
+     * directory, and can be cancelled while it is running.
+     *
+     * @param directory the directory to which the {@link Resource}s should be
+     *                  unpacked.
+     * @param resources the {@link Resource}s that should be unpacked.
+     * @param options   the extraction options.
+     * @return the new job, which is not started yet.
+     * @throws NullPointerException if the directory, the resources or the
+     *                              options are null.
+     */
+    public ExtractionJob createExtractionJob(
+            @NonNull File directory, @NonNull Collection<Resource> resources,
+            @NonNull ExtractionOptions options) {
+        return new ExtractionJob(this, directory, resources, options);
     }
-}
 
+    /**
+     * Sets the listener of the progress and timing events of the unpacker.
+     * <p>
+     * The listener receives the events of all subsequent operations,
+     * including the loading of the index if it is not loaded yet.
+     *
+     * @param listener the listener, or {@link ExtractionListener#NONE} to
+     *                 ignore the events.
+     * @throws NullPointerException if the listener is null.
+     */
+    public void setExtractionListener(
+            @NonNull ExtractionListener listener) {
+        extractionListener = listener;
+    }
+
+    /**
+     * Checks whether the archive file is open.
+     *
+     * @return true if the unpacker is not closed.
+     */
+    public boolean isOpen() {
+        return fileChannel.isOpen();
+    }
+
+    /**
+     * Closes the archive file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    /**
+     * Returns the path of the file to which a {@link Resource} is unpacked.
+     *
+     * @param directory the directory to which the resource is unpacked.
+     * @param resource  the resource.
+     * @return the path of the target file.
+     */
+    static Path getTargetPath(File directory, Resource resource) {
+        return Paths.get(directory + "/" + resource.getName());
+    }
+
+    ExtractionListener getExtractionListener() {
+        return extractionListener;
+    }
+
+    /**
+     * Unpacks a {@link Resource} to a selected directory, checking for
+     * cancellation between chunks of the resource data.
+     *
+     * @param directory the directory to which the resource should be
+     *                  unpacked.
+     * @param resource  the resource that should be unpacked.
+     * @param cancelled returns true if the unpacking should be stopped.
+     * @throws InterruptedIOException if the unpacking is cancelled.
+     * @throws IOException            if the file is corrupted.
+     */
+    void unpackResource(File directory, Resource resource,
+                        BooleanSupplier cancelled) throws IOException {
+        writeTarget(directory, resource, target -> transfer(fileChannel,
+                resource.getOffset(), resource.getSize(), target, cancelled));
+    }
+
+    /**
+     * Unpacks a {@link Resource} to a selected directory from its data,
+     * which has already been read from the archive.
+     *
+     * @param directory the directory to which the resource should be
+     *                  unpacked.
+     * @param resource  the resource that should be unpacked.
+     * @param data      the buffer with the resource data.
+     * @throws IOException if the file cannot be written.
+     */
+    void unpackResource(File directory, Resource resource, ByteBuffer data)
+            throws IOException {
+        writeTarget(directory, resource, target -> {
+            while (data.hasRemaining()) {
+                target.write(data);
+            }
+        });
+    }
+
+    /**
+     * Reads a range of the archive into a buffer, from the position of the
+     * buffer to its limit.
+     *
+     * @param buffer   the buffer into which the range should be read.
+     * @param position the offset of the range in the archive.
+     * @throws IOException if the end of the file is reached.
+     */
+    void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, position);
+
+            if (read == -1)
+                throw new EOFException("End of file is reached.");
+
+            position += read;
+        }
+    }
+
+    private void writeTarget(File directory, Resource resource,
+                             TargetWriter writer) throws IOException {
+        val path = getTargetPath(directory, resource);
+
+        long startTime = System.nanoTime();
+        long openNanos;
+        long transferNanos;
+
+        val outputChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            try (outputChannel) {
+                openNanos = System.nanoTime() - startTime;
+
+                writer.write(outputChannel);
+
+                transferNanos = System.nanoTime() - startTime - openNanos;
+            }
+        } catch (IOException | RuntimeException e) {
+            deletePartialFile(path, e);
+
+            throw e;
+        }
+
+        extractionListener.resourceUnpacked(resource, openNanos,
+                transferNanos, System.nanoTime() - startTime);
+    }
+
+    private ResourceTable readResourceTable() throws IOException {
+        long indexSize = (long) header.getResourceCount() *
+                PsFsV1Index.ENTRY_SIZE;
+
+        if (PsFsV1Header.SIZE + indexSize > fileChannel.size())
+            throw new EOFException("End of file is reached.");
+
+        val indexBuffer = ByteBuffer.allocate((int) indexSize);
+
+        readFully(indexBuffer, PsFsV1Header.SIZE);
+
+        return PsFsV1Index.decode(indexBuffer.flip(),
+                header.getResourceCount());
+    }
+
+    private ResourceTable loadCachedResourceTable() {
+        if (indexCache == null) {
+            return null;
+        }
+
+        try {
+            return indexCache.load(file, header);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void storeCachedResourceTable() {
+        if (indexCache == null) {
+            return;
+        }
+
+        try {
+            indexCache.store(file, header, resourceTable);
+        } catch (IOException e) {
+            // the index is parsed again on the next opening
+        }
+    }
+
+    /**
+     * Deletes a partially written target file.
+     *
+     * @param path  the path of the target file.
+     * @param cause the error that stopped the writing, to which an error of
+     *              the deletion is added.
+     */
+    static void deletePartialFile(Path path, Exception cause) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void transfer(FileChannel source, long position, long count,
+                          WritableByteChannel target,
+                          BooleanSupplier cancelled) throws IOException {
+        // transferTo() may copy fewer bytes than requested,
+        // so it is called until the whole range is copied
+        while (count > 0) {
+            if (cancelled.getAsBoolean())
+                throw new InterruptedIOException("Unpacking is cancelled");
+
+            long transferred = source.transferTo(position,
+                    Math.min(count, TRANSFER_CHUNK_SIZE), target);
+
+            if (transferred == 0) {
+                // a target channel that accepts no bytes, such as a
+                // non-blocking one, would make transferTo() return 0
+                // forever, so the chunk is copied through a buffer instead
+                transferred = copyChunk(source, position,
+                        Math.min(count, COPY_BUFFER_SIZE), target);
+            }
+
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private long copyChunk(FileChannel source, long position, long count,
+                           WritableByteChannel target) throws IOException {
+        val buffer = ByteBuffer.allocate((int) count);
+
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, position + buffer.position());
+
+            if (read == -1)
+                throw new EOFException("End of file is reached.");
+        }
+
+        int written = target.write(buffer.flip());
+
+        if (written == 0)
+            throw new IOException("Target channel accepts no data");
+
+        return written;
+    }
+
+    private interface TargetWriter {
+
+        void write(FileChannel target) throws IOException;
+    }
+}
@@ -0,0 +1,269 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.unpack.VerificationReport.Problem;
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Verifies the integrity of 'PS_FS_V1' archives without unpacking them.
+ * <p>
+ * Unlike the {@link PsFsV1Unpacker}, which stops at the first invalid index
+ * entry, the verifier decodes the whole index without validation and
+ * reports all its problems: empty names, sizes that are <= 0 after the
+ * resource header adjustment, offsets that point into the header or the
+ * index, data past the end of the file and overlapping entries.
+ * <p>
+ * The data of every entry that is inside the file bounds is checksummed
+ * with CRC32C. The entries are grouped by offset into batches, which are
+ * memory-mapped and checksummed by multiple threads, so the data is never
+ * copied to the heap and a verification takes less time than unpacking.
+ *
+ * @author Artyom Mameev
+ */
+public final class PsFsV1Verifier {
+
+    // the maximum size of the mapped range checksummed by one task
+    static final long MAX_BATCH_SIZE = 16 * 1024 * 1024;
+
+    private PsFsV1Verifier() {
+    }
+
+    /**
+     * Verifies an archive.
+     *
+     * @param file    the 'PS_FS_V1' archive.
+     * @param threads the count of threads that checksum the data.
+     * @return the verification report.
+     * @throws NullPointerException     if the file is null.
+     * @throws IllegalArgumentException if the file has a wrong header, or if
+     *                                  the count of threads is <= 0.
+     * @throws InterruptedIOException   if the current thread is interrupted.
+     * @throws IOException              if the file cannot be read.
+     */
+    public static VerificationReport verify(@NonNull File file, int threads)
+            throws IOException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Threads cannot be <= 0");
+
+        @Cleanup val channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+
+        long fileSize = channel.size();
+
+        if (fileSize < PsFsV1Header.SIZE)
+            throw new EOFException("End of file is reached.");
+
+        val headerBuffer = ByteBuffer.allocate(PsFsV1Header.SIZE);
+
+        while (headerBuffer.hasRemaining()) {
+            if (channel.read(headerBuffer, headerBuffer.position()) == -1)
+                throw new EOFException("End of file is reached.");
+        }
+
+        val header = PsFsV1Header.parse(headerBuffer.array());
+
+        val problems = new ArrayList<Problem>();
+
+        long indexEnd = PsFsV1Header.SIZE + (long) header.getResourceCount() *
+                PsFsV1Index.ENTRY_SIZE;
+
+        int entryCount = (int) Math.min(header.getResourceCount(),
+                (fileSize - PsFsV1Header.SIZE) / PsFsV1Index.ENTRY_SIZE);
+
+        if (entryCount < header.getResourceCount()) {
+            problems.add(new Problem(Problem.Type.TRUNCATED_INDEX,
+                    entryCount, "Index is truncated, " +
+                    header.getResourceCount() + " entries are expected"));
+        }
+
+        if ((long) entryCount * PsFsV1Index.ENTRY_SIZE > Integer.MAX_VALUE)
+            throw new IOException("Index is too large to be mapped");
+
+        val index = channel.map(FileChannel.MapMode.READ_ONLY,
+                PsFsV1Header.SIZE,
+                (long) entryCount * PsFsV1Index.ENTRY_SIZE);
+
+        long[] offsets = new long[entryCount];
+        long[] ends = new long[entryCount];
+        val inBounds = new ArrayList<Integer>();
+
+        for (int i = 0; i < entryCount; i++) {
+            val entry = PsFsV1Index.decodeRawEntry(index,
+                    i * PsFsV1Index.ENTRY_SIZE);
+
+            offsets[i] = entry.offset;
+            ends[i] = entry.offset + entry.size;
+
+            if (entry.name.isEmpty()) {
+                problems.add(new Problem(Problem.Type.EMPTY_NAME, i,
+                        "Name is empty"));
+            }
+
+            if (entry.size <= 0) {
+                problems.add(new Problem(Problem.Type.INVALID_SIZE, i,
+                        "Size " + entry.size + " is <= 0"));
+            } else if (entry.offset - PsFsV1Index.USELESS_HEADER_SIZE <
+                    indexEnd) {
+                // the resource header must not overlap the index either
+                problems.add(new Problem(Problem.Type.INVALID_OFFSET, i,
+                        "Offset " + (entry.offset -
+                                PsFsV1Index.USELESS_HEADER_SIZE) +
+                                " points before the end of the index at " +
+                                indexEnd));
+            } else if (ends[i] > fileSize) {
+                problems.add(new Problem(Problem.Type.OUT_OF_BOUNDS, i,
+                        "Data ends at " + ends[i] + " past the end of " +
+                                "the file at " + fileSize));
+            } else {
+                inBounds.add(i);
+            }
+        }
+
+        inBounds.sort(Comparator.<Integer>comparingLong(i -> offsets[i])
+                .thenComparingLong(i -> ends[i]));
+
+        findOverlaps(inBounds, offsets, ends, problems);
+
+        problems.sort(Comparator.comparingInt(Problem::getEntryIndex));
+
+        long[] checksums = new long[entryCount];
+        Arrays.fill(checksums, VerificationReport.NO_CHECKSUM);
+
+        long bytesChecksummed = checksum(channel, inBounds, offsets, ends,
+                checksums, threads);
+
+        return new VerificationReport(entryCount, problems, bytesChecksummed,
+                checksums);
+    }
+
+    private static void findOverlaps(List<Integer> sortedEntries,
+                                     long[] offsets, long[] ends,
+                                     List<Problem> problems) {
+        int previous = -1;
+
+        for (int i : sortedEntries) {
+            if (previous != -1 && offsets[i] < ends[previous]) {
+                problems.add(new Problem(Problem.Type.OVERLAP, i,
+                        "Data overlaps the data of entry " + previous));
+            }
+
+            // the entry that ends last overlaps the most following entries
+            if (previous == -1 || ends[i] > ends[previous]) {
+                previous = i;
+            }
+        }
+    }
+
+    private static long checksum(FileChannel channel,
+                                 List<Integer> sortedEntries, long[] offsets,
+                                 long[] ends, long[] checksums, int threads)
+            throws IOException {
+        val batches = new ArrayList<List<Integer>>();
+
+        long batchStart = 0;
+        long bytes = 0;
+
+        for (int i : sortedEntries) {
+            if (batches.isEmpty() ||
+                    ends[i] - batchStart > MAX_BATCH_SIZE) {
+                batches.add(new ArrayList<>());
+
+                batchStart = offsets[i];
+            }
+
+            batches.get(batches.size() - 1).add(i);
+
+            bytes += ends[i] - offsets[i];
+        }
+
+        if (batches.isEmpty()) {
+            return 0;
+        }
+
+        val executor = Executors.newFixedThreadPool(
+                Math.min(threads, batches.size()));
+
+        val futures = new ArrayList<Future<?>>();
+
+        try {
+            for (val batch : batches) {
+                futures.add(executor.submit(() -> {
+                    checksumBatch(channel, batch, offsets, ends, checksums);
+
+                    return null;
+                }));
+            }
+
+            for (val future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Verification is interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw new IOException(e.getCause());
+        } finally {
+            // the running batches are not interrupted, because an interrupt
+            // during FileChannel.map would close the shared channel, but the
+            // batches that have not started yet are cancelled
+            for (val future : futures) {
+                future.cancel(false);
+            }
+
+            executor.shutdown();
+
+            ExtractionJob.awaitTermination(executor);
+        }
+
+        return bytes;
+    }
+
+    private static void checksumBatch(FileChannel channel,
+                                      List<Integer> batch, long[] offsets,
+                                      long[] ends, long[] checksums)
+            throws IOException {
+        long start = offsets[batch.get(0)];
+        long end = 0;
+
+        for (int i : batch) {
+            end = Math.max(end, ends[i]);
+        }
+
+        val mapped = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                end - start);
+
+        val crc32c = new CRC32C();
+
+        for (int i : batch) {
+            crc32c.reset();
+            crc32c.update(mapped.duplicate()
+                    .limit((int) (ends[i] - start))
+                    .position((int) (offsets[i] - start)));
+
+            checksums[i] = crc32c.getValue();
+        }
+    }
+}
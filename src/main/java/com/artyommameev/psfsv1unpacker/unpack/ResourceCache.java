@@ -0,0 +1,195 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+
+/**
+ * A byte-budgeted cache of {@link Resource} payloads in front of a
+ * {@link PsFsV1Unpacker}.
+ * <p>
+ * Payloads are read once into direct buffers, which are stored outside of
+ * the Java heap, so large cached payloads neither take heap space nor
+ * lengthen garbage collection pauses. When the total size of the cached
+ * payloads exceeds the budget, the least recently used payloads are evicted;
+ * their memory is released when the buffers are garbage-collected. Payloads
+ * larger than the whole budget are read without being cached.
+ * <p>
+ * The hit, miss and eviction counters can be used to size the cache. The
+ * cache is safe for use by multiple threads.
+ *
+ * @author Artyom Mameev
+ */
+public class ResourceCache {
+
+    private final PsFsV1Unpacker unpacker;
+    private final long maxBytes;
+    private final LinkedHashMap<Resource, ByteBuffer> payloads =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Instantiates a new ResourceCache.
+     *
+     * @param unpacker the unpacker from which the payloads should be read.
+     * @param maxBytes the maximum total size of the cached payloads.
+     * @throws NullPointerException     if the unpacker is null.
+     * @throws IllegalArgumentException if the maximum size is <= 0.
+     */
+    public ResourceCache(@NonNull PsFsV1Unpacker unpacker, long maxBytes) {
+        this.unpacker = unpacker;
+
+        if (maxBytes > 0) {
+            this.maxBytes = maxBytes;
+        } else throw new IllegalArgumentException(
+                "Max bytes cannot be <= 0");
+    }
+
+    /**
+     * Returns the data of a {@link Resource}, reading it from the archive if
+     * it is not cached.
+     * <p>
+     * The returned buffer is a read-only view of the cached payload, its
+     * position is zero and its limit is the size of the resource.
+     *
+     * @param resource the {@link Resource} whose data should be returned.
+     * @return the read-only buffer with the resource data.
+     * @throws IOException          if the file is corrupted.
+     * @throws NullPointerException if the resource is null.
+     */
+    public ByteBuffer getResourceData(@NonNull Resource resource)
+            throws IOException {
+        synchronized (this) {
+            val payload = payloads.get(resource);
+
+            if (payload != null) {
+                hitCount++;
+
+                return payload.asReadOnlyBuffer();
+            }
+
+            missCount++;
+        }
+
+        // the payload is read outside the lock to not block cache hits
+        val payload = resource.getSize() <= maxBytes ?
+                ByteBuffer.allocateDirect(resource.getSize()) :
+                ByteBuffer.allocate(resource.getSize());
+
+        unpacker.readResource(resource, payload);
+        payload.flip();
+
+        if (resource.getSize() > maxBytes) {
+            return payload.asReadOnlyBuffer();
+        }
+
+        synchronized (this) {
+            val existingPayload = payloads.putIfAbsent(resource, payload);
+
+            if (existingPayload != null) {
+                // another thread has read the payload in the meantime
+                return existingPayload.asReadOnlyBuffer();
+            }
+
+            cachedBytes += resource.getSize();
+
+            evict();
+        }
+
+        return payload.asReadOnlyBuffer();
+    }
+
+    /**
+     * Unpacks a {@link Resource} to a channel through the cache. The target
+     * channel is not closed.
+     *
+     * @param resource the {@link Resource} that should be unpacked.
+     * @param target   the channel to which the {@link Resource} should be
+     *                 written.
+     * @throws IOException          if the file is corrupted.
+     * @throws NullPointerException if the resource or the target is null.
+     */
+    public void unpackResource(@NonNull Resource resource,
+                               @NonNull WritableByteChannel target)
+            throws IOException {
+        val data = getResourceData(resource);
+
+        while (data.hasRemaining()) {
+            target.write(data);
+        }
+    }
+
+    /**
+     * Evicts all payloads from the cache. The counters are not reset.
+     */
+    public synchronized void clear() {
+        evictionCount += payloads.size();
+        cachedBytes = 0;
+
+        payloads.clear();
+    }
+
+    /**
+     * Returns the maximum total size of the cached payloads.
+     *
+     * @return the maximum size in bytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the total size of the cached payloads.
+     *
+     * @return the cached size in bytes.
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Returns the count of requests served from the cache.
+     *
+     * @return the count of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the count of requests that were read from the archive.
+     *
+     * @return the count of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the count of payloads evicted from the cache.
+     *
+     * @return the count of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private void evict() {
+        val iterator = payloads.values().iterator();
+
+        while (cachedBytes > maxBytes) {
+            cachedBytes -= iterator.next().capacity();
+            iterator.remove();
+
+            evictionCount++;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A readable channel over a range of an archive file.
+ * <p>
+ * The channel reads the archive with positional reads, so many resource
+ * channels can share the same archive {@link FileChannel}. Closing the
+ * channel does not close the archive.
+ *
+ * @author Artyom Mameev
+ */
+final class ResourceChannel implements ReadableByteChannel {
+
+    private final FileChannel source;
+    private final long end;
+    private long position;
+    private boolean open = true;
+
+    /**
+     * Instantiates a new ResourceChannel.
+     *
+     * @param source the archive channel.
+     * @param offset the offset of the range in the archive.
+     * @param size   the size of the range.
+     */
+    ResourceChannel(@NonNull FileChannel source, long offset, long size) {
+        this.source = source;
+        this.position = offset;
+        this.end = offset + size;
+    }
+
+    @Override
+    public synchronized int read(@NonNull ByteBuffer destination)
+            throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+
+        if (position >= end) {
+            return -1;
+        }
+
+        long remaining = end - position;
+        int oldLimit = destination.limit();
+
+        if (destination.remaining() > remaining) {
+            destination.limit(destination.position() + (int) remaining);
+        }
+
+        try {
+            int read = source.read(destination, position);
+
+            if (read == -1)
+                throw new EOFException("End of file is reached.");
+
+            position += read;
+
+            return read;
+        } finally {
+            destination.limit(oldLimit);
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open && source.isOpen();
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,424 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.NonNull;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A compact, immutable table of the {@link Resource}s of an archive.
+ * <p>
+ * The table stores the resources as columns: the sizes and the offsets in
+ * primitive int columns, and the UTF-8 names packed into one shared byte
+ * column. The columns are backed either by heap arrays or by a memory-mapped
+ * {@link IndexCache} file.
+ * Walking the table with the index-based accessors does not allocate, and
+ * {@link Resource} objects are only created on demand, so large archives
+ * take several times less memory than a list of resources.
+ * <p>
+ * The table also contains an open-addressing hash index over the stored
+ * name bytes, which is built once with the table. Lookups by name encode the
+ * requested name on the fly and compare it with the stored bytes, so they
+ * take constant time, do not decode the stored names and do not allocate.
+ *
+ * @author Artyom Mameev
+ */
+public final class ResourceTable {
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int[] UTF8_LEADING_BITS = {0, 0, 0xC0, 0xE0, 0xF0};
+
+    private final IntBuffer sizes;
+    private final IntBuffer offsets;
+    private final IntBuffer nameOffsets;
+    private final IntBuffer nameSlots;
+    private final ByteBuffer names;
+
+    /**
+     * Instantiates a new ResourceTable from heap arrays and builds its hash
+     * index.
+     *
+     * @param sizes       the sizes of the resources.
+     * @param offsets     the offsets of the resources.
+     * @param nameOffsets the offsets of the names in the names array, with
+     *                    the end of the last name as the last element.
+     * @param names       the packed UTF-8 names.
+     */
+    ResourceTable(int[] sizes, int[] offsets, int[] nameOffsets,
+                  byte[] names) {
+        this(IntBuffer.wrap(sizes), IntBuffer.wrap(offsets),
+                IntBuffer.wrap(nameOffsets), IntBuffer.wrap(new int[
+                        Integer.highestOneBit(Math.max(1, sizes.length) *
+                                2 - 1) * 2]), ByteBuffer.wrap(names));
+
+        for (int i = 0; i < sizes.length; i++) {
+            addToNameIndex(i);
+        }
+    }
+
+    private ResourceTable(IntBuffer sizes, IntBuffer offsets,
+                          IntBuffer nameOffsets, IntBuffer nameSlots,
+                          ByteBuffer names) {
+        this.sizes = sizes;
+        this.offsets = offsets;
+        this.nameOffsets = nameOffsets;
+        this.nameSlots = nameSlots;
+        this.names = names;
+    }
+
+    /**
+     * Returns the count of the resources in the table.
+     *
+     * @return the count of the resources.
+     */
+    public int size() {
+        return sizes.limit();
+    }
+
+    /**
+     * Decodes the name of a resource.
+     *
+     * @param index the index of the resource.
+     * @return the name of the resource.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public String getName(int index) {
+        Objects.checkIndex(index, size());
+
+        byte[] name = new byte[nameOffsets.get(index + 1) -
+                nameOffsets.get(index)];
+
+        names.duplicate().position(nameOffsets.get(index)).get(name);
+
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the size of a resource.
+     *
+     * @param index the index of the resource.
+     * @return the size of the resource.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public int getSize(int index) {
+        return sizes.get(Objects.checkIndex(index, size()));
+    }
+
+    /**
+     * Returns the offset of a resource in the archive file.
+     *
+     * @param index the index of the resource.
+     * @return the offset of the resource.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public int getOffset(int index) {
+        return offsets.get(Objects.checkIndex(index, size()));
+    }
+
+    /**
+     * Creates a {@link Resource} for a row of the table.
+     *
+     * @param index the index of the resource.
+     * @return the new {@link Resource}.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public Resource get(int index) {
+        return new Resource(getName(index), getSize(index),
+                getOffset(index));
+    }
+
+    /**
+     * Returns the index of the first resource with the given name.
+     * <p>
+     * The names are compared by their UTF-8 bytes.
+     *
+     * @param name the name of the resource.
+     * @return the index of the resource, or -1 if there is no resource with
+     * the given name.
+     * @throws NullPointerException if the name is null.
+     */
+    public int indexOf(@NonNull String name) {
+        int mask = nameSlots.limit() - 1;
+
+        for (int slot = hash(name) & mask; ; slot = (slot + 1) & mask) {
+            int index = nameSlots.get(slot) - 1;
+
+            if (index == -1 || nameEquals(index, name)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Returns an unmodifiable list view of the table, which creates the
+     * {@link Resource}s on access.
+     *
+     * @return the list view of the table.
+     */
+    public List<Resource> asList() {
+        return new ResourceList();
+    }
+
+    /**
+     * Returns the count of bytes written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @return the serialized size of the table.
+     */
+    long getSerializedSize() {
+        return 3L * Integer.BYTES + (long) Integer.BYTES * (sizes.limit() +
+                offsets.limit() + nameOffsets.limit() + nameSlots.limit()) +
+                names.limit();
+    }
+
+    /**
+     * Writes the columns and the hash index of the table to a buffer, in the
+     * format read by {@link #readFrom(ByteBuffer)}.
+     *
+     * @param target the buffer to which the table should be written.
+     */
+    void writeTo(ByteBuffer target) {
+        target.order(ByteOrder.LITTLE_ENDIAN);
+
+        target.putInt(size());
+        target.putInt(nameSlots.limit());
+        target.putInt(names.limit());
+
+        for (val column : new IntBuffer[]{sizes, offsets, nameOffsets,
+                nameSlots}) {
+            for (int i = 0; i < column.limit(); i++) {
+                target.putInt(column.get(i));
+            }
+        }
+
+        target.put(names.duplicate().clear());
+    }
+
+    /**
+     * Creates a table backed by the columns written by
+     * {@link #writeTo(ByteBuffer)}, without copying them.
+     *
+     * @param source the buffer with the table, starting at its position.
+     * @return the table backed by the buffer.
+     * @throws IllegalArgumentException if the buffer does not contain a valid
+     *                                  table.
+     */
+    static ResourceTable readFrom(ByteBuffer source) {
+        val cursor = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (cursor.remaining() < 3 * Integer.BYTES)
+            throw new IllegalArgumentException("Table is truncated");
+
+        int count = cursor.getInt();
+        int slotCount = cursor.getInt();
+        int namesLength = cursor.getInt();
+
+        if (count < 0 || namesLength < 0 || slotCount <= count ||
+                Integer.bitCount(slotCount) != 1)
+            throw new IllegalArgumentException("Table is corrupted");
+
+        if ((long) Integer.BYTES * (3L * count + 1 + slotCount) +
+                namesLength != cursor.remaining())
+            throw new IllegalArgumentException("Table is truncated");
+
+        val table = new ResourceTable(sliceInts(cursor, count),
+                sliceInts(cursor, count), sliceInts(cursor, count + 1),
+                sliceInts(cursor, slotCount), cursor.slice());
+
+        table.validate();
+
+        return table;
+    }
+
+    /**
+     * Checks that every value of the columns is in range, so that the
+     * accessors and the lookups of a table read from a damaged source
+     * neither fail nor loop forever.
+     *
+     * @throws IllegalArgumentException if a value is out of range.
+     */
+    private void validate() {
+        int count = size();
+
+        if (nameOffsets.get(0) != 0 || nameOffsets.get(count) != names.limit())
+            throw new IllegalArgumentException("Table is corrupted");
+
+        for (int i = 0; i < count; i++) {
+            if (nameOffsets.get(i + 1) < nameOffsets.get(i) ||
+                    sizes.get(i) <= 0 || offsets.get(i) <= 0)
+                throw new IllegalArgumentException("Table is corrupted");
+        }
+
+        int usedSlots = 0;
+
+        for (int slot = 0; slot < nameSlots.limit(); slot++) {
+            int value = nameSlots.get(slot);
+
+            if (value < 0 || value > count)
+                throw new IllegalArgumentException("Table is corrupted");
+
+            if (value != 0) {
+                usedSlots++;
+            }
+        }
+
+        // every lookup ends at a free slot, so at least one must be free
+        if (usedSlots > count)
+            throw new IllegalArgumentException("Table is corrupted");
+    }
+
+    private static IntBuffer sliceInts(ByteBuffer cursor, int count) {
+        val slice = cursor.slice()
+                .limit(count * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+
+        cursor.position(cursor.position() + count * Integer.BYTES);
+
+        return slice;
+    }
+
+    private void addToNameIndex(int index) {
+        int mask = nameSlots.limit() - 1;
+        int slot = hash(index) & mask;
+
+        // the first resource with a name wins, like in a list scan
+        while (nameSlots.get(slot) != 0) {
+            if (nameEquals(index, nameSlots.get(slot) - 1)) {
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        nameSlots.put(slot, index + 1);
+    }
+
+    private int hash(int index) {
+        int hash = FNV_OFFSET_BASIS;
+
+        for (int i = nameOffsets.get(index); i < nameOffsets.get(index + 1);
+             i++) {
+            hash = (hash ^ (names.get(i) & 0xFF)) * FNV_PRIME;
+        }
+
+        return spread(hash);
+    }
+
+    private static int hash(String name) {
+        int hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < name.length(); ) {
+            int codePoint = codePointAt(name, i);
+            int length = utf8Length(codePoint);
+
+            for (int j = 0; j < length; j++) {
+                hash = (hash ^ utf8Byte(codePoint, length, j)) * FNV_PRIME;
+            }
+
+            i += Character.charCount(codePoint);
+        }
+
+        return spread(hash);
+    }
+
+    private boolean nameEquals(int index, int otherIndex) {
+        int position = nameOffsets.get(index);
+        int length = nameOffsets.get(index + 1) - position;
+        int otherPosition = nameOffsets.get(otherIndex);
+
+        if (nameOffsets.get(otherIndex + 1) - otherPosition != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (names.get(position + i) != names.get(otherPosition + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean nameEquals(int index, String name) {
+        int position = nameOffsets.get(index);
+        int end = nameOffsets.get(index + 1);
+
+        for (int i = 0; i < name.length(); ) {
+            int codePoint = codePointAt(name, i);
+            int length = utf8Length(codePoint);
+
+            if (position + length > end) {
+                return false;
+            }
+
+            for (int j = 0; j < length; j++) {
+                if ((names.get(position++) & 0xFF) !=
+                        utf8Byte(codePoint, length, j)) {
+                    return false;
+                }
+            }
+
+            i += Character.charCount(codePoint);
+        }
+
+        return position == end;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int codePointAt(String string, int index) {
+        int codePoint = string.codePointAt(index);
+
+        // unpaired surrogates are encoded as '?', like String.getBytes() does
+        return Character.isSurrogate((char) codePoint) &&
+                codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ?
+                '?' : codePoint;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+
+        if (codePoint < 0x800) {
+            return 2;
+        }
+
+        return codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? 3 : 4;
+    }
+
+    private static int utf8Byte(int codePoint, int length, int index) {
+        int shift = 6 * (length - 1 - index);
+
+        if (index == 0) {
+            return UTF8_LEADING_BITS[length] | (codePoint >> shift);
+        }
+
+        return 0x80 | ((codePoint >> shift) & 0x3F);
+    }
+
+    private class ResourceList extends AbstractList<Resource>
+            implements RandomAccess {
+
+        @Override
+        public Resource get(int index) {
+            return ResourceTable.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return ResourceTable.this.size();
+        }
+    }
+}
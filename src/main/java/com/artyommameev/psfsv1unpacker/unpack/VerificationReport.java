@@ -0,0 +1,126 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The result of the verification of a 'PS_FS_V1' archive by the
+ * {@link PsFsV1Verifier}.
+ * <p>
+ * The report contains the problems of the index and the CRC32C checksums
+ * of the data of all entries that are inside the file bounds.
+ *
+ * @author Artyom Mameev
+ */
+public final class VerificationReport {
+
+    /**
+     * The checksum of an entry whose data is not checksummed, because the
+     * entry is invalid or out of the file bounds.
+     */
+    public static final long NO_CHECKSUM = -1;
+
+    @Getter
+    private final int entryCount;
+    @Getter
+    private final List<Problem> problems;
+    @Getter
+    private final long bytesChecksummed;
+    private final long[] checksums;
+
+    VerificationReport(int entryCount, List<Problem> problems,
+                       long bytesChecksummed, long[] checksums) {
+        this.entryCount = entryCount;
+        this.problems = Collections.unmodifiableList(problems);
+        this.bytesChecksummed = bytesChecksummed;
+        this.checksums = checksums;
+    }
+
+    /**
+     * Checks whether the archive has no problems.
+     *
+     * @return true if the archive has no problems.
+     */
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * Returns the CRC32C checksum of the data of an index entry.
+     *
+     * @param index the index of the entry.
+     * @return the checksum of the entry data, or {@link #NO_CHECKSUM} if the
+     * entry is invalid or out of the file bounds.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public long getChecksum(int index) {
+        return checksums[Objects.checkIndex(index, entryCount)];
+    }
+
+    /**
+     * A problem of an index entry.
+     */
+    @Getter
+    public static final class Problem {
+
+        private final Type type;
+        private final int entryIndex;
+        private final String message;
+
+        Problem(Type type, int entryIndex, String message) {
+            this.type = type;
+            this.entryIndex = entryIndex;
+            this.message = message;
+        }
+
+        /**
+         * Returns a string representation of the problem in the following
+         * format:
+         * <p>
+         * entry index: message
+         */
+        @Override
+        public String toString() {
+            return "entry " + entryIndex + ": " + message;
+        }
+
+        /**
+         * The type of a problem.
+         */
+        public enum Type {
+
+            /**
+             * The index ends before its last entry.
+             */
+            TRUNCATED_INDEX,
+
+            /**
+             * The entry has an empty name.
+             */
+            EMPTY_NAME,
+
+            /**
+             * The size of the entry is <= 0.
+             */
+            INVALID_SIZE,
+
+            /**
+             * The offset of the entry points before the end of the index.
+             */
+            INVALID_OFFSET,
+
+            /**
+             * The data of the entry ends past the end of the file.
+             */
+            OUT_OF_BOUNDS,
+
+            /**
+             * The data of the entry overlaps the data of another entry.
+             */
+            OVERLAP
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.artyommameev.psfsv1unpacker.cli;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class CliOptionsTests {
+
+    @Test
+    void parseThrowsNullPointerExceptionIfArgsIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                CliOptions.parse(null));
+    }
+
+    @Test
+    void parseThrowsIllegalArgumentExceptionIfNoArchivesAreSpecified() {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"-t", "2"}));
+    }
+
+    @Test
+    void parseThrowsIllegalArgumentExceptionIfOptionIsUnknown() {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"--unknown", "a.dat"}));
+    }
+
+    @Test
+    void parseThrowsIllegalArgumentExceptionIfOptionValueIsMissing() {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"a.dat", "--output"}));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1", "two"})
+    void parseThrowsIllegalArgumentExceptionIfThreadsIsInvalid(
+            String threads) {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"-t", threads, "a.dat"}));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1", "many", "9223372036854775807"})
+    void parseThrowsIllegalArgumentExceptionIfPipelineCapacityIsInvalid(
+            String capacity) {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"-p", capacity, "a.dat"}));
+    }
+
+    @Test
+    void parseParsesAllOptions() {
+        val options = CliOptions.parse(new String[]{"a.dat", "--output",
+                "out", "-i", "*.png", "--include", "ui_*", "-t", "3",
+                "--resume", "--verify", "--stats", "--pipeline", "64", "-c",
+                "b.dat"});
+
+        assertEquals(List.of(new File("a.dat"), new File("b.dat")),
+                options.getArchives());
+        assertEquals(new File("out"), options.getOutputDirectory());
+        assertEquals(List.of("*.png", "ui_*"), options.getIncludes());
+        assertEquals(3, options.getThreads());
+        assertTrue(options.isResume());
+        assertTrue(options.isVerify());
+        assertTrue(options.isStats());
+        assertEquals(64L * 1024 * 1024, options.getPipelineCapacity());
+        assertTrue(options.isCheck());
+        assertFalse(options.isHelp());
+    }
+
+    @Test
+    void parseUsesDefaults() {
+        val options = CliOptions.parse(new String[]{"a.dat"});
+
+        assertEquals(new File("."), options.getOutputDirectory());
+        assertTrue(options.getIncludes().isEmpty());
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                options.getThreads());
+        assertFalse(options.isResume());
+        assertFalse(options.isVerify());
+        assertFalse(options.isStats());
+        assertEquals(0, options.getPipelineCapacity());
+        assertFalse(options.isCheck());
+    }
+
+    @Test
+    void parseThrowsIllegalArgumentExceptionIfVerifyIsUsedWithoutResume() {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"--verify", "a.dat"}));
+    }
+
+    @Test
+    void parseParsesHelpWithoutArchives() {
+        assertTrue(CliOptions.parse(new String[]{"--help"}).isHelp());
+    }
+
+    @Test
+    void isIncludedMatchesGlobs() {
+        val options = CliOptions.parse(new String[]{"-i", "*.png", "-i",
+                "ui_?.cfg", "a.dat"});
+
+        assertTrue(options.isIncluded("atlas.png"));
+        assertTrue(options.isIncluded("ui_1.cfg"));
+        assertFalse(options.isIncluded("ui_10.cfg"));
+        assertFalse(options.isIncluded("movie.bik"));
+    }
+
+    @Test
+    void isIncludedMatchesGlobSyntax() {
+        val options = CliOptions.parse(new String[]{"-i", "{atlas,ui}_[0-9!]*",
+                "-i", "data/**.bin", "-i", "[!a-z].txt", "-i", "a\\*b",
+                "a.dat"});
+
+        assertTrue(options.isIncluded("atlas_1.png"));
+        assertTrue(options.isIncluded("ui_!.cfg"));
+        assertFalse(options.isIncluded("ui_x.cfg"));
+        assertTrue(options.isIncluded("data/x/y.bin"));
+        assertTrue(options.isIncluded("1.txt"));
+        assertFalse(options.isIncluded("b.txt"));
+        assertTrue(options.isIncluded("a*b"));
+        assertFalse(options.isIncluded("axb"));
+    }
+
+    @Test
+    void isIncludedMatchesNamesThatAreNotValidPaths() {
+        val options = CliOptions.parse(new String[]{"-i", "*.png", "a.dat"});
+
+        assertTrue(options.isIncluded("bad\u0000name.png"));
+        assertFalse(options.isIncluded("bad\u0000name.bik"));
+    }
+
+    @Test
+    void parseThrowsIllegalArgumentExceptionIfGlobIsInvalid() {
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"-i", "[a-z", "a.dat"}));
+        assertThrows(IllegalArgumentException.class, () ->
+                CliOptions.parse(new String[]{"-i", "{a,b", "a.dat"}));
+    }
+
+    @Test
+    void isIncludedIncludesEverythingWithoutGlobs() {
+        assertTrue(CliOptions.parse(new String[]{"a.dat"})
+                .isIncluded("anything.bin"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.artyommameev.psfsv1unpacker.cli;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CliTests {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    void runUnpacksAllResources(@TempDir Path tempDir) throws Exception {
+        int exitCode = run("-o", tempDir.toString(), getTestFile("test.dat"));
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertEquals("FILENO1!", Files.readString(
+                tempDir.resolve("testfile.test")));
+        assertEquals("FILENO2!", Files.readString(
+                tempDir.resolve("testfile2.test")));
+        assertTrue(out.toString().contains("2 resources"));
+    }
+
+    @Test
+    void runUnpacksOnlyIncludedResources(@TempDir Path tempDir) {
+        int exitCode = run("-o", tempDir.toString(), "-i", "*2.test",
+                getTestFile("test.dat"));
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertFalse(Files.exists(tempDir.resolve("testfile.test")));
+        assertTrue(Files.exists(tempDir.resolve("testfile2.test")));
+    }
+
+    @Test
+    void runUnpacksMultipleArchivesToSubdirectories(@TempDir Path tempDir)
+            throws Exception {
+        val archive = tempDir.resolve("copy.dat");
+        Files.copy(Path.of(getTestFile("test.dat")), archive);
+
+        val outputDirectory = tempDir.resolve("out");
+
+        int exitCode = run("-o", outputDirectory.toString(), "-t", "1",
+                getTestFile("test.dat"), archive.toString());
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertTrue(Files.exists(outputDirectory.resolve("test")
+                .resolve("testfile.test")));
+        assertTrue(Files.exists(outputDirectory.resolve("copy")
+                .resolve("testfile2.test")));
+    }
+
+    @Test
+    void runUnpacksArchivesWithSameNameToDifferentSubdirectories(
+            @TempDir Path tempDir) throws Exception {
+        val archive = Files.createDirectory(tempDir.resolve("other"))
+                .resolve("test.dat");
+        Files.copy(Path.of(getTestFile("test.dat")), archive);
+
+        val outputDirectory = tempDir.resolve("out");
+
+        int exitCode = run("-o", outputDirectory.toString(), "-t", "1",
+                getTestFile("test.dat"), archive.toString());
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertTrue(Files.exists(outputDirectory.resolve("test")
+                .resolve("testfile.test")));
+        assertTrue(Files.exists(outputDirectory.resolve("test-2")
+                .resolve("testfile.test")));
+    }
+
+    @Test
+    void runResumesUnpacking(@TempDir Path tempDir) {
+        run("-o", tempDir.toString(), getTestFile("test.dat"));
+
+        out.reset();
+
+        int exitCode = run("-o", tempDir.toString(), "--resume",
+                getTestFile("test.dat"));
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertTrue(out.toString().contains("0 resources"));
+        assertTrue(out.toString().contains("skipped: 2"));
+    }
+
+    @Test
+    void runPrintsStats(@TempDir Path tempDir) {
+        int exitCode = run("-o", tempDir.toString(), "-s",
+                getTestFile("test.dat"));
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertTrue(out.toString().contains("index parse:"));
+        assertTrue(out.toString().contains("transfer latency:"));
+    }
+
+    @Test
+    void runReturnsFailureIfArchiveIsInvalid(@TempDir Path tempDir) {
+        int exitCode = run("-o", tempDir.toString(),
+                getTestFile("test_wrong_header.dat"));
+
+        assertEquals(Cli.EXIT_FAILURE, exitCode);
+        assertTrue(err.toString().contains("Wrong Header"));
+    }
+
+    @Test
+    void runChecksArchiveWithoutUnpacking(@TempDir Path tempDir) {
+        int exitCode = run("-o", tempDir.toString(), "--check",
+                getTestFile("test.dat"));
+
+        assertEquals(Cli.EXIT_SUCCESS, exitCode);
+        assertTrue(out.toString().contains("valid, 2 entries"));
+        assertFalse(Files.exists(tempDir.resolve("testfile.test")));
+    }
+
+    @Test
+    void runReturnsFailureIfCheckedArchiveIsCorrupted() {
+        int exitCode = run("-c", getTestFile("test_corrupted.dat"));
+
+        assertEquals(Cli.EXIT_FAILURE, exitCode);
+        assertTrue(out.toString().contains("problems"));
+    }
+
+    @Test
+    void runReturnsUsageErrorIfArgumentsAreInvalid() {
+        assertEquals(Cli.EXIT_USAGE, run("--threads"));
+        assertTrue(err.toString().contains("Usage"));
+    }
+
+    @Test
+    void runPrintsHelp() {
+        assertEquals(Cli.EXIT_SUCCESS, run("-h"));
+        assertTrue(out.toString().contains("Usage"));
+    }
+
+    private int run(String... args) {
+        return Cli.run(args, new PrintStream(out), new PrintStream(err));
+    }
+
+    private String getTestFile(String name) {
+        return getClass().getClassLoader().getResource(name).getPath();
+    }
+}
@@ -0,0 +1,92 @@
+package com.artyommameev.psfsv1unpacker.controller;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class ResourceListModelTests {
+
+    private PsFsV1Unpacker unpacker;
+    private ResourceListModel model;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        unpacker = new PsFsV1Unpacker(new File(getClass().getClassLoader()
+                .getResource("test.dat").getPath()));
+
+        model = new ResourceListModel(unpacker.getResourceTable());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        unpacker.close();
+    }
+
+    @Test
+    void listContainsAllResourcesOfTable() throws IOException {
+        assertEquals(unpacker.getAllResources(), model);
+    }
+
+    @Test
+    void getDisplayStringIsFormattedLikeToString() throws IOException {
+        for (int i = 0; i < model.size(); i++) {
+            assertEquals(unpacker.getAllResources().get(i).toString(),
+                    model.getDisplayString(i));
+        }
+    }
+
+    @Test
+    void getDisplayStringReturnsCachedString() {
+        assertSame(model.getDisplayString(1), model.getDisplayString(1));
+    }
+
+    @Test
+    void getSizeReturnsSizeOfResource() {
+        assertEquals(model.get(0).getSize(), model.getSize(0));
+    }
+
+    @Test
+    void getDisplayStringThrowsIndexOutOfBoundsExceptionIfIndexIsOutOfRange() {
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                model.getDisplayString(model.size()));
+    }
+
+    @Test
+    void filterReturnsFoundResources() throws IOException {
+        val filtered = model.filter(unpacker.getNameIndex().search("file2"));
+
+        assertEquals(1, filtered.size());
+        assertEquals(unpacker.getAllResources().get(1), filtered.get(0));
+        assertEquals(model.getSize(1), filtered.getSize(0));
+    }
+
+    @Test
+    void filteredListSharesDisplayStrings() throws IOException {
+        val filtered = model.filter(unpacker.getNameIndex().search("file2"));
+
+        assertSame(model.getDisplayString(1), filtered.getDisplayString(0));
+    }
+
+    @Test
+    void listIsUnmodifiable() {
+        val resource = new Resource("name", 1, 1);
+
+        assertThrows(UnsupportedOperationException.class, () ->
+                model.add(resource));
+    }
+
+    @Test
+    void constructorThrowsNullPointerExceptionIfTableIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                new ResourceListModel(null));
+    }
+}
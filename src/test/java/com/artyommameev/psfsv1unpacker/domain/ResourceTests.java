@@ -5,6 +5,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SuppressWarnings("ConstantConditions")
@@ -56,4 +57,22 @@ public class ResourceTests {
 
         assertEquals("Name (1 KB)", resource.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void resourcesWithSameValuesAreEqual() {
+        assertEquals(new Resource("Name", 1024, 2),
+                new Resource("Name", 1024, 2));
+        assertEquals(new Resource("Name", 1024, 2).hashCode(),
+                new Resource("Name", 1024, 2).hashCode());
+    }
+
+    @Test
+    void resourcesWithDifferentValuesAreNotEqual() {
+        assertNotEquals(new Resource("Name", 1024, 2),
+                new Resource("Name2", 1024, 2));
+        assertNotEquals(new Resource("Name", 1024, 2),
+                new Resource("Name", 1025, 2));
+        assertNotEquals(new Resource("Name", 1024, 2),
+                new Resource("Name", 1024, 3));
+    }
+}
@@ -0,0 +1,179 @@
+package com.artyommameev.psfsv1unpacker.pack;
+
+import com.artyommameev.psfsv1unpacker.unpack.ExtractionOptions;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Verifier;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class PsFsV1PackerTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void packedArchiveIsUnpackedLosslessly() throws IOException {
+        val sourceDirectory = Files.createDirectory(tempDir.resolve("source"));
+        val random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            byte[] data = new byte[1 + random.nextInt(4096)];
+            random.nextBytes(data);
+
+            Files.write(sourceDirectory.resolve("asset" + i + ".bin"), data);
+        }
+
+        // larger than the staging buffer to be streamed in chunks
+        byte[] large = new byte[PsFsV1Packer.STAGING_BUFFER_SIZE * 2 + 3];
+        random.nextBytes(large);
+
+        Files.write(sourceDirectory.resolve("large.bin"), large);
+
+        val archive = tempDir.resolve("packed.dat").toFile();
+
+        val packer = new PsFsV1Packer().addDirectory(
+                sourceDirectory.toFile());
+
+        assertEquals(2001, packer.getResourceCount());
+
+        packer.pack(archive);
+
+        assertTrue(PsFsV1Verifier.verify(archive, 2).isValid());
+
+        val outputDirectory = Files.createDirectory(tempDir.resolve("out"));
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            assertEquals(2001, unpacker.getAllResources().size());
+
+            unpacker.unpackResources(outputDirectory.toFile(),
+                    unpacker.getAllResources(), ExtractionOptions.defaults());
+        }
+
+        try (val files = Files.list(sourceDirectory)) {
+            for (val file : (Iterable<Path>) files::iterator) {
+                assertArrayEquals(Files.readAllBytes(file),
+                        Files.readAllBytes(outputDirectory.resolve(
+                                file.getFileName())));
+            }
+        }
+    }
+
+    @Test
+    void packWritesDataAndFilesInAddedOrder() throws IOException {
+        val file = tempDir.resolve("file.bin");
+        Files.write(file, new byte[]{4, 5, 6});
+
+        val archive = tempDir.resolve("packed.dat").toFile();
+
+        new PsFsV1Packer()
+                .addData("ä.txt", ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .addFile("file", file.toFile())
+                .pack(archive);
+
+        assertEquals(16 + 2 * 64 + 2 * (16 + 3), archive.length());
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val resources = unpacker.getAllResources();
+
+            assertEquals("ä.txt", resources.get(0).getName());
+            assertEquals("file", resources.get(1).getName());
+            assertEquals(16 + 2 * 64 + 16, resources.get(0).getOffset());
+            assertArrayEquals(new byte[]{4, 5, 6},
+                    readResource(unpacker, "file"));
+        }
+    }
+
+    @Test
+    void packWritesEmptyArchive() throws IOException {
+        val archive = tempDir.resolve("empty.dat").toFile();
+
+        new PsFsV1Packer().pack(archive);
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            assertTrue(unpacker.getAllResources().isEmpty());
+        }
+    }
+
+    @Test
+    void packDoesNotChangeDataPosition() throws IOException {
+        val data = ByteBuffer.wrap(new byte[]{1, 2, 3}).position(1);
+
+        new PsFsV1Packer().addData("data", data)
+                .pack(tempDir.resolve("packed.dat").toFile());
+
+        assertEquals(1, data.position());
+    }
+
+    @Test
+    void packThrowsIOExceptionAndDeletesArchiveIfFileIsMissing() {
+        val archive = tempDir.resolve("packed.dat").toFile();
+
+        val packer = new PsFsV1Packer().addFile("missing",
+                tempDir.resolve("missing.bin").toFile());
+
+        assertThrows(IOException.class, () -> packer.pack(archive));
+        assertFalse(archive.exists());
+    }
+
+    @Test
+    void packThrowsIOExceptionIfFileIsEmpty() throws IOException {
+        val file = Files.createFile(tempDir.resolve("empty.bin"));
+
+        val packer = new PsFsV1Packer().addFile("empty", file.toFile());
+
+        assertThrows(IOException.class, () ->
+                packer.pack(tempDir.resolve("packed.dat").toFile()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " name", "name\t",
+            "a_name_longer_than_22_bytes"})
+    void addDataThrowsIllegalArgumentExceptionIfNameIsInvalid(String name) {
+        assertThrows(IllegalArgumentException.class, () ->
+                new PsFsV1Packer().addData(name, ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    void addDataThrowsIllegalArgumentExceptionIfNameIsAlreadyAdded() {
+        val packer = new PsFsV1Packer().addData("name",
+                ByteBuffer.allocate(1));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                packer.addData("name", ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    void addDataThrowsIllegalArgumentExceptionIfDataIsEmpty() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new PsFsV1Packer().addData("name", ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    void addFileThrowsNullPointerExceptionIfFileIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                new PsFsV1Packer().addFile("name", null));
+    }
+
+    private byte[] readResource(PsFsV1Unpacker unpacker, String name)
+            throws IOException {
+        val resource = unpacker.findResource(name);
+        val buffer = ByteBuffer.allocate(resource.getSize());
+
+        unpacker.readResource(resource, buffer);
+
+        return buffer.array();
+    }
+}
@@ -0,0 +1,314 @@
+package com.artyommameev.psfsv1unpacker.pack;
+
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Header;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Index;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Unpacker;
+import com.artyommameev.psfsv1unpacker.unpack.PsFsV1Verifier;
+import lombok.val;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class PsFsV1PatcherTests {
+
+    @TempDir
+    Path tempDir;
+
+    private File archive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        archive = tempDir.resolve("archive.dat").toFile();
+
+        new PsFsV1Packer()
+                .addData("first", ByteBuffer.wrap(new byte[]{1, 1, 1, 1}))
+                .addData("second", ByteBuffer.wrap(new byte[]{2, 2, 2, 2}))
+                .addData("third", ByteBuffer.wrap(new byte[]{3, 3, 3, 3}))
+                .pack(archive);
+    }
+
+    @Test
+    void replaceWritesSmallerDataInPlace() throws IOException {
+        long archiveSize = archive.length();
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            val offset = patcher.getAllResources().get(1).getOffset();
+
+            patcher.replace("second", ByteBuffer.wrap(new byte[]{9, 9}));
+
+            assertEquals(offset, patcher.getAllResources().get(1).getOffset());
+            assertEquals(2, patcher.getUnusedBytes());
+        }
+
+        assertEquals(archiveSize, archive.length());
+        assertArrayEquals(new byte[]{9, 9}, readResource("second"));
+        assertArrayEquals(new byte[]{3, 3, 3, 3}, readResource("third"));
+    }
+
+    @Test
+    void replaceAppendsLargerData() throws IOException {
+        long archiveSize = archive.length();
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.replace("first", ByteBuffer.wrap(new byte[8]));
+
+            assertEquals(16 + 4, patcher.getUnusedBytes());
+        }
+
+        assertEquals(archiveSize + 16 + 8, archive.length());
+        assertArrayEquals(new byte[8], readResource("first"));
+        assertArrayEquals(new byte[]{2, 2, 2, 2}, readResource("second"));
+    }
+
+    @Test
+    void replaceGrowsLastResourceInPlace() throws IOException {
+        long archiveSize = archive.length();
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.replace("third", ByteBuffer.wrap(new byte[8]));
+        }
+
+        assertEquals(archiveSize + 4, archive.length());
+        assertArrayEquals(new byte[8], readResource("third"));
+    }
+
+    @Test
+    void appendMovesDataOutOfTheWayOfTheNewEntry() throws IOException {
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.append("fourth", ByteBuffer.wrap(new byte[]{4, 4}));
+            patcher.append("fifth", ByteBuffer.wrap(new byte[]{5}));
+        }
+
+        assertTrue(PsFsV1Verifier.verify(archive, 1).isValid());
+
+        assertEquals(List.of("first", "second", "third", "fourth", "fifth"),
+                getNames());
+        assertArrayEquals(new byte[]{1, 1, 1, 1}, readResource("first"));
+        assertArrayEquals(new byte[]{2, 2, 2, 2}, readResource("second"));
+        assertArrayEquals(new byte[]{4, 4}, readResource("fourth"));
+        assertArrayEquals(new byte[]{5}, readResource("fifth"));
+    }
+
+    @Test
+    void appendAddsResourceToEmptyArchive() throws IOException {
+        new PsFsV1Packer().pack(archive);
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.append("only", ByteBuffer.wrap(new byte[]{6, 6}));
+        }
+
+        assertTrue(PsFsV1Verifier.verify(archive, 1).isValid());
+        assertArrayEquals(new byte[]{6, 6}, readResource("only"));
+    }
+
+    @Test
+    void removeMovesLastEntryIntoTheSlot() throws IOException {
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.remove("first");
+
+            assertEquals(20, patcher.getUnusedBytes() -
+                    PsFsV1Index.ENTRY_SIZE);
+        }
+
+        assertEquals(List.of("third", "second"), getNames());
+        assertArrayEquals(new byte[]{3, 3, 3, 3}, readResource("third"));
+    }
+
+    @Test
+    void appendReusesSlotOfRemovedEntry() throws IOException {
+        long archiveSize = archive.length();
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.remove("third");
+            patcher.append("new", ByteBuffer.wrap(new byte[]{7}));
+        }
+
+        assertEquals(archiveSize + 16 + 1, archive.length());
+        assertEquals(List.of("first", "second", "new"), getNames());
+        assertArrayEquals(new byte[]{7}, readResource("new"));
+    }
+
+    @Test
+    void compactReclaimsUnusedSpace() throws IOException {
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.replace("first", ByteBuffer.wrap(new byte[100]));
+            patcher.remove("second");
+            patcher.append("fourth", ByteBuffer.wrap(new byte[]{4}));
+        }
+
+        PsFsV1Patcher.compact(archive);
+
+        assertEquals(16 + 3 * 64 + 3 * 16 + 100 + 4 + 1, archive.length());
+        assertEquals(List.of("first", "third", "fourth"), getNames());
+        assertArrayEquals(new byte[100], readResource("first"));
+        assertArrayEquals(new byte[]{3, 3, 3, 3}, readResource("third"));
+        assertArrayEquals(new byte[]{4}, readResource("fourth"));
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            assertEquals(0, patcher.getUnusedBytes());
+        }
+    }
+
+    @Test
+    void compactKeepsCompactArchiveUnchanged() throws IOException {
+        fillUnusedFields();
+
+        byte[] bytes = Files.readAllBytes(archive.toPath());
+
+        PsFsV1Patcher.compact(archive);
+
+        assertArrayEquals(bytes, Files.readAllBytes(archive.toPath()));
+    }
+
+    @Test
+    void compactKeepsUnusedFieldsAndResourceHeaders() throws IOException {
+        fillUnusedFields();
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.replace("first", ByteBuffer.wrap(new byte[100]));
+        }
+
+        // the replaced data is appended with an empty resource header
+        int firstHeader = 16 + 3 * 64 + 3 * (16 + 4);
+
+        try (val randomAccessFile = new RandomAccessFile(archive, "rw")) {
+            randomAccessFile.seek(firstHeader + 1);
+            randomAccessFile.write(0x42);
+        }
+
+        PsFsV1Patcher.compact(archive);
+
+        byte[] bytes = Files.readAllBytes(archive.toPath());
+
+        assertEquals(16 + 3 * 64 + 3 * 16 + 4 + 4 + 100, bytes.length);
+        assertEquals(0x5A, bytes[PsFsV1Header.SIZE - 1]);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0x5A, bytes[PsFsV1Header.SIZE + i * 64 + 30]);
+        }
+
+        assertEquals(0x5A, bytes[16 + 3 * 64 + 1]);
+        assertEquals(0x5A, bytes[16 + 3 * 64 + 20 + 1]);
+        assertEquals(0x42, bytes[16 + 3 * 64 + 40 + 1]);
+        assertArrayEquals(new byte[100], readResource("first"));
+        assertArrayEquals(new byte[]{2, 2, 2, 2}, readResource("second"));
+        assertArrayEquals(new byte[]{3, 3, 3, 3}, readResource("third"));
+    }
+
+    @Test
+    void compactKeepsNamesWithTruncatedMultibyteCharacters()
+            throws IOException {
+        val name = "a".repeat(PsFsV1Index.NAME_SIZE - 1) + "b";
+
+        new PsFsV1Packer()
+                .addData(name, ByteBuffer.wrap(new byte[]{1, 1, 1, 1}))
+                .addData("second", ByteBuffer.wrap(new byte[]{2, 2, 2, 2}))
+                .pack(archive);
+
+        // the name field cuts the first byte of a two-byte character
+        try (val randomAccessFile = new RandomAccessFile(archive, "rw")) {
+            randomAccessFile.seek(PsFsV1Header.SIZE +
+                    PsFsV1Index.NAME_SIZE - 1);
+            randomAccessFile.write(0xC3);
+        }
+
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.remove("second");
+        }
+
+        val names = getNames();
+
+        PsFsV1Patcher.compact(archive);
+
+        assertEquals(names, getNames());
+        assertEquals(16 + 64 + 16 + 4, archive.length());
+
+        try (val randomAccessFile = new RandomAccessFile(archive, "r")) {
+            randomAccessFile.seek(PsFsV1Header.SIZE +
+                    PsFsV1Index.NAME_SIZE - 1);
+
+            assertEquals(0xC3, randomAccessFile.read());
+        }
+    }
+
+    @Test
+    void appendThrowsIllegalArgumentExceptionIfNameExists()
+            throws IOException {
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            assertThrows(IllegalArgumentException.class, () ->
+                    patcher.append("first", ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void replaceThrowsIllegalArgumentExceptionIfResourceIsNotFound()
+            throws IOException {
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            assertThrows(IllegalArgumentException.class, () ->
+                    patcher.replace("missing", ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void removeThrowsIllegalArgumentExceptionIfResourceIsNotFound()
+            throws IOException {
+        try (val patcher = new PsFsV1Patcher(archive)) {
+            patcher.remove("first");
+
+            assertThrows(IllegalArgumentException.class, () ->
+                    patcher.remove("first"));
+        }
+    }
+
+    @Test
+    void constructorThrowsNullPointerExceptionIfArchiveIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                new PsFsV1Patcher(null));
+    }
+
+    private void fillUnusedFields() throws IOException {
+        try (val randomAccessFile = new RandomAccessFile(archive, "rw")) {
+            randomAccessFile.seek(PsFsV1Header.SIZE - 1);
+            randomAccessFile.write(0x5A);
+
+            for (int i = 0; i < 3; i++) {
+                randomAccessFile.seek(PsFsV1Header.SIZE + i * 64 + 30);
+                randomAccessFile.write(0x5A);
+
+                randomAccessFile.seek(16 + 3 * 64 + i * (16 + 4) + 1);
+                randomAccessFile.write(0x5A);
+            }
+        }
+    }
+
+    private List<String> getNames() throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            return unpacker.getAllResources().stream()
+                    .map(resource -> resource.getName())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val resource = unpacker.findResource(name);
+            val buffer = ByteBuffer.allocate(resource.getSize());
+
+            unpacker.readResource(resource, buffer);
+
+            return buffer.array();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class ArchiveRegistryTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<File> archives = new ArrayList<>();
+    private ArchiveRegistry archiveRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            val archive = tempDir.resolve("archive" + i + ".dat").toFile();
+            TestArchives.write(archive, Map.of("file", new byte[]{(byte) i}));
+            archives.add(archive);
+        }
+
+        archiveRegistry = new ArchiveRegistry(2);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        archiveRegistry.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    void constructorThrowsIllegalArgumentExceptionIfMaxIsNotPositive(
+            int maxOpenArchives) {
+        assertThrows(IllegalArgumentException.class, () ->
+                new ArchiveRegistry(maxOpenArchives));
+    }
+
+    @Test
+    void acquireThrowsNullPointerExceptionIfFileIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                archiveRegistry.acquire(null));
+    }
+
+    @Test
+    void acquireReusesOpenArchive() throws IOException {
+        try (val first = archiveRegistry.acquire(archives.get(0));
+             val second = archiveRegistry.acquire(archives.get(0))) {
+            assertSame(first.getUnpacker(), second.getUnpacker());
+            assertEquals(1, archiveRegistry.getOpenArchiveCount());
+        }
+    }
+
+    @Test
+    void acquireEvictsLeastRecentlyUsedArchive() throws IOException {
+        PsFsV1Unpacker first;
+        PsFsV1Unpacker second;
+
+        try (val handle = archiveRegistry.acquire(archives.get(0))) {
+            first = handle.getUnpacker();
+        }
+
+        try (val handle = archiveRegistry.acquire(archives.get(1))) {
+            second = handle.getUnpacker();
+        }
+
+        archiveRegistry.acquire(archives.get(0)).close();
+        archiveRegistry.acquire(archives.get(2)).close();
+
+        assertEquals(2, archiveRegistry.getOpenArchiveCount());
+        assertTrue(first.isOpen());
+        assertFalse(second.isOpen());
+    }
+
+    @Test
+    void archiveInUseIsClosedOnlyAfterRelease() throws IOException {
+        val handle = archiveRegistry.acquire(archives.get(0));
+        val unpacker = handle.getUnpacker();
+
+        try (val second = archiveRegistry.acquire(archives.get(1));
+             val third = archiveRegistry.acquire(archives.get(2))) {
+            assertEquals(2, archiveRegistry.getOpenArchiveCount());
+            assertTrue(unpacker.isOpen());
+            assertEquals("file", unpacker.getAllResources().get(0).getName());
+
+            handle.close();
+
+            assertFalse(unpacker.isOpen());
+            assertTrue(second.getUnpacker().isOpen());
+            assertTrue(third.getUnpacker().isOpen());
+        }
+    }
+
+    @Test
+    void archiveInUseIsEvictedAfterArchivesNotInUse() throws IOException {
+        try (val handle = archiveRegistry.acquire(archives.get(0))) {
+            archiveRegistry.acquire(archives.get(1)).close();
+            archiveRegistry.acquire(archives.get(2)).close();
+            archiveRegistry.acquire(archives.get(3)).close();
+
+            assertTrue(handle.getUnpacker().isOpen());
+        }
+    }
+
+    @Test
+    void handleThrowsIllegalStateExceptionIfClosed() throws IOException {
+        val handle = archiveRegistry.acquire(archives.get(0));
+
+        handle.close();
+        handle.close();
+
+        assertThrows(IllegalStateException.class, handle::getUnpacker);
+    }
+
+    @Test
+    void closeClosesArchivesNotInUse() throws IOException {
+        val handle = archiveRegistry.acquire(archives.get(0));
+        val unused = archiveRegistry.acquire(archives.get(1));
+        val unusedUnpacker = unused.getUnpacker();
+        unused.close();
+
+        archiveRegistry.close();
+
+        assertFalse(unusedUnpacker.isOpen());
+        assertTrue(handle.getUnpacker().isOpen());
+
+        val unpacker = handle.getUnpacker();
+        handle.close();
+
+        assertFalse(unpacker.isOpen());
+        assertThrows(IllegalStateException.class, () ->
+                archiveRegistry.acquire(archives.get(0)));
+    }
+
+    @Test
+    void concurrentReadersNeverReadClosedArchive() throws Exception {
+        val executor = Executors.newFixedThreadPool(8);
+
+        try {
+            val futures = new ArrayList<Future<?>>();
+
+            for (int i = 0; i < 2000; i++) {
+                val archiveNumber = i % archives.size();
+
+                futures.add(executor.submit(() -> {
+                    try (val handle = archiveRegistry.acquire(
+                            archives.get(archiveNumber))) {
+                        val unpacker = handle.getUnpacker();
+                        val outputStream = new ByteArrayOutputStream();
+
+                        unpacker.unpackResource(
+                                unpacker.getAllResources().get(0),
+                                Channels.newChannel(outputStream));
+
+                        assertArrayEquals(new byte[]{(byte) archiveNumber},
+                                outputStream.toByteArray());
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (val future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(archiveRegistry.getOpenArchiveCount() <= 2);
+    }
+}
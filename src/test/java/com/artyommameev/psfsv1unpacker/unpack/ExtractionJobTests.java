@@ -0,0 +1,421 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtractionJobTests {
+
+    @TempDir
+    Path tempDir;
+
+    private File outputDirectory;
+    private PsFsV1Unpacker unpacker;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        for (int i = 0; i < 8; i++) {
+            payloads.put("file" + i, new byte[]{(byte) i, (byte) i, 1, 2});
+        }
+
+        payloads.put("large", new byte[20 * 1024 * 1024]);
+
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        outputDirectory = tempDir.resolve("out").toFile();
+        outputDirectory.mkdir();
+
+        unpacker = new PsFsV1Unpacker(archive);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        unpacker.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void runUnpacksAllResources(int threads) throws IOException {
+        createJob(ExtractionOptions.defaults().withThreads(threads)).run();
+
+        assertArrayEquals(new byte[]{3, 3, 1, 2}, Files.readAllBytes(
+                outputDirectory.toPath().resolve("file3")));
+        assertEquals(20 * 1024 * 1024, Files.size(
+                outputDirectory.toPath().resolve("large")));
+    }
+
+    @Test
+    void runThrowsIllegalStateExceptionIfJobIsAlreadyStarted()
+            throws IOException {
+        val job = createJob(ExtractionOptions.defaults());
+
+        job.run();
+
+        assertThrows(IllegalStateException.class, job::run);
+    }
+
+    @Test
+    void cancelledJobDoesNotUnpackAnything() {
+        val job = createJob(ExtractionOptions.defaults());
+
+        job.cancel();
+
+        assertThrows(InterruptedIOException.class, job::run);
+        assertTrue(job.isCancelled());
+        assertEquals(0, outputDirectory.list().length);
+    }
+
+    @Test
+    void cancelStopsUnpacking() {
+        val unpackedCount = new AtomicInteger();
+        val job = new ExtractionJob[1];
+
+        job[0] = createJob(ExtractionOptions.defaults()
+                .withThreads(1)
+                .withOrderByOffset(false)
+                .withResourceUnpackedCallback(resource -> {
+                    unpackedCount.incrementAndGet();
+
+                    job[0].cancel();
+                }));
+
+        assertThrows(InterruptedIOException.class, () -> job[0].run());
+        assertEquals(1, unpackedCount.get());
+        assertEquals(1, outputDirectory.list().length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void runReadsNearbyResourcesTogether(int threads) throws IOException {
+        val metrics = new ExtractionMetrics();
+        unpacker.setExtractionListener(metrics);
+
+        val resources = new ArrayList<>(unpacker.getAllResources());
+        Collections.reverse(resources);
+
+        unpacker.createExtractionJob(outputDirectory, resources,
+                ExtractionOptions.defaults().withThreads(threads)).run();
+
+        assertEquals(1, metrics.getReadLatency().getCount());
+        assertEquals(9, metrics.getResourcesUnpacked());
+
+        for (int i = 0; i < 8; i++) {
+            assertArrayEquals(new byte[]{(byte) i, (byte) i, 1, 2},
+                    Files.readAllBytes(outputDirectory.toPath()
+                            .resolve("file" + i)));
+        }
+    }
+
+    @Test
+    void cancelledTransferDeletesPartialFile() throws IOException {
+        val resource = unpacker.findResource("large");
+        val checks = new AtomicInteger();
+
+        assertThrows(InterruptedIOException.class, () ->
+                unpacker.unpackResource(outputDirectory, resource, () ->
+                        checks.incrementAndGet() > 1));
+
+        assertFalse(Files.exists(outputDirectory.toPath().resolve("large")));
+    }
+
+    @Test
+    void failedUnpackingDeletesPartialFile() {
+        val job = unpacker.createExtractionJob(outputDirectory,
+                List.of(new Resource("broken", 1024, 1 << 30)),
+                ExtractionOptions.defaults());
+
+        assertThrows(IOException.class, job::run);
+        assertFalse(Files.exists(outputDirectory.toPath().resolve("broken")));
+    }
+
+    @Test
+    void runSkipsExistingFilesWithSameSize() throws IOException {
+        val existing = outputDirectory.toPath().resolve("file1");
+        val wrongSize = outputDirectory.toPath().resolve("file2");
+
+        Files.write(existing, new byte[]{9, 9, 9, 9});
+        Files.write(wrongSize, new byte[]{9});
+
+        val metrics = new ExtractionMetrics();
+        unpacker.setExtractionListener(metrics);
+
+        val job = createJob(ExtractionOptions.defaults()
+                .withSkipExisting(true));
+
+        job.run();
+
+        assertEquals(1, job.getSkippedCount());
+        assertEquals(1, metrics.getResourcesSkipped());
+        assertEquals(8, metrics.getResourcesUnpacked());
+        assertArrayEquals(new byte[]{9, 9, 9, 9}, Files.readAllBytes(
+                existing));
+        assertArrayEquals(new byte[]{2, 2, 1, 2}, Files.readAllBytes(
+                wrongSize));
+    }
+
+    @Test
+    void runUnpacksExistingFilesWithWrongChecksum() throws IOException {
+        val corrupted = outputDirectory.toPath().resolve("file1");
+        val valid = outputDirectory.toPath().resolve("file2");
+
+        Files.write(corrupted, new byte[]{9, 9, 9, 9});
+        Files.write(valid, new byte[]{2, 2, 1, 2});
+
+        val job = createJob(ExtractionOptions.defaults()
+                .withSkipExisting(true)
+                .withVerifyChecksums(true));
+
+        job.run();
+
+        assertEquals(1, job.getSkippedCount());
+        assertArrayEquals(new byte[]{1, 1, 1, 2}, Files.readAllBytes(
+                corrupted));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void pipelinedRunUnpacksAllResources(int threads) throws IOException {
+        val metrics = new ExtractionMetrics();
+        unpacker.setExtractionListener(metrics);
+
+        val large = new byte[20 * 1024 * 1024];
+
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31);
+        }
+
+        val archive = tempDir.resolve("pipelined.dat").toFile();
+        TestArchives.write(archive, new LinkedHashMap<>(Map.of(
+                "small", new byte[]{1, 2, 3}, "large", large)));
+
+        try (val pipelinedUnpacker = new PsFsV1Unpacker(archive)) {
+            pipelinedUnpacker.setExtractionListener(metrics);
+
+            pipelinedUnpacker.createExtractionJob(outputDirectory,
+                    pipelinedUnpacker.getAllResources(),
+                    ExtractionOptions.defaults()
+                            .withThreads(threads)
+                            .withPipelineCapacity(1)).run();
+        }
+
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(
+                outputDirectory.toPath().resolve("small")));
+        assertArrayEquals(large, Files.readAllBytes(
+                outputDirectory.toPath().resolve("large")));
+        assertEquals(2, metrics.getResourcesUnpacked());
+    }
+
+    @Test
+    void pipelinedRunUnpacksLargeResourceInSubdirectory() throws IOException {
+        val large = new byte[9 * 1024 * 1024];
+
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31);
+        }
+
+        val archive = tempDir.resolve("subdirectory.dat").toFile();
+        TestArchives.write(archive, Map.of("sub/large", large));
+        Files.createDirectories(outputDirectory.toPath().resolve("sub"));
+
+        try (val subdirectoryUnpacker = new PsFsV1Unpacker(archive)) {
+            subdirectoryUnpacker.createExtractionJob(outputDirectory,
+                    subdirectoryUnpacker.getAllResources(),
+                    ExtractionOptions.defaults()
+                            .withPipelineCapacity(1)).run();
+        }
+
+        assertArrayEquals(large, Files.readAllBytes(
+                outputDirectory.toPath().resolve("sub/large")));
+    }
+
+    @Test
+    void pipelinedRunCallsCallbackForEveryResource() throws IOException {
+        val unpackedCount = new AtomicInteger();
+
+        createJob(ExtractionOptions.defaults()
+                .withPipelineCapacity(64 * 1024 * 1024)
+                .withResourceUnpackedCallback(resource ->
+                        unpackedCount.incrementAndGet())).run();
+
+        assertEquals(9, unpackedCount.get());
+
+        for (int i = 0; i < 8; i++) {
+            assertArrayEquals(new byte[]{(byte) i, (byte) i, 1, 2},
+                    Files.readAllBytes(outputDirectory.toPath()
+                            .resolve("file" + i)));
+        }
+    }
+
+    @Test
+    void pipelinedRunWithHugeCapacityAllocatesOnlyNeededBuffers()
+            throws IOException {
+        createJob(ExtractionOptions.defaults()
+                .withPipelineCapacity(1024L * 1024 * 1024 * 1024)).run();
+
+        for (int i = 0; i < 8; i++) {
+            assertArrayEquals(new byte[]{(byte) i, (byte) i, 1, 2},
+                    Files.readAllBytes(outputDirectory.toPath()
+                            .resolve("file" + i)));
+        }
+    }
+
+    @Test
+    void cancelStopsPipelinedUnpacking() {
+        val job = new ExtractionJob[1];
+
+        job[0] = createJob(ExtractionOptions.defaults()
+                .withPipelineCapacity(1)
+                .withResourceUnpackedCallback(resource -> job[0].cancel()));
+
+        assertThrows(InterruptedIOException.class, () -> job[0].run());
+        assertTrue(job[0].isCancelled());
+    }
+
+    @Test
+    void cancelledPipelinedUnpackingDeletesPartialLargeFile()
+            throws IOException {
+        val archive = tempDir.resolve("cancelled.dat").toFile();
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        payloads.put("small", new byte[]{1, 2, 3});
+        payloads.put("large", new byte[20 * 1024 * 1024]);
+
+        TestArchives.write(archive, payloads);
+
+        val job = new ExtractionJob[1];
+        val reads = new AtomicInteger();
+
+        try (val cancelledUnpacker = new PsFsV1Unpacker(archive)) {
+            cancelledUnpacker.setExtractionListener(new ExtractionListener() {
+                @Override
+                public void rangeRead(int resourceCount, long bytes,
+                                      long nanos) {
+                    reads.incrementAndGet();
+                }
+
+                @Override
+                public void resourceUnpacked(Resource resource,
+                                             long openNanos,
+                                             long transferNanos,
+                                             long totalNanos) {
+                    // the single writer waits until all chunks of the
+                    // large resource are queued, then the job is cancelled
+                    // before any of them is written
+                    long deadline = System.nanoTime() + 10_000_000_000L;
+
+                    while (reads.get() < 4 && System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+
+                    job[0].cancel();
+                }
+            });
+
+            job[0] = cancelledUnpacker.createExtractionJob(outputDirectory,
+                    cancelledUnpacker.getAllResources(),
+                    ExtractionOptions.defaults()
+                            .withThreads(1)
+                            .withPipelineCapacity(64 * 1024 * 1024));
+
+            assertThrows(InterruptedIOException.class, () -> job[0].run());
+        }
+
+        assertEquals(4, reads.get());
+        assertFalse(Files.exists(outputDirectory.toPath().resolve("large")));
+
+        try (val files = Files.list(outputDirectory.toPath())) {
+            assertTrue(files.noneMatch(file -> file.toString()
+                    .endsWith(".part")));
+        }
+    }
+
+    @Test
+    void failedPipelinedUnpackingThrowsIOException() {
+        val job = unpacker.createExtractionJob(outputDirectory,
+                List.of(new Resource("broken", 1024, 1 << 30)),
+                ExtractionOptions.defaults().withPipelineCapacity(1));
+
+        assertThrows(IOException.class, job::run);
+        assertFalse(Files.exists(outputDirectory.toPath().resolve("broken")));
+    }
+
+    @Test
+    void pipelinedRunSkipsExistingFilesWithSameSize() throws IOException {
+        val existing = outputDirectory.toPath().resolve("file1");
+
+        Files.write(existing, new byte[]{9, 9, 9, 9});
+
+        val job = createJob(ExtractionOptions.defaults()
+                .withSkipExisting(true)
+                .withPipelineCapacity(1));
+
+        job.run();
+
+        assertEquals(1, job.getSkippedCount());
+        assertArrayEquals(new byte[]{9, 9, 9, 9}, Files.readAllBytes(
+                existing));
+        assertEquals(20 * 1024 * 1024, Files.size(
+                outputDirectory.toPath().resolve("large")));
+    }
+
+    @Test
+    void pipelinedRunCallsCallbackForSkippedResources() throws IOException {
+        Files.write(outputDirectory.toPath().resolve("file1"),
+                new byte[]{9, 9, 9, 9});
+
+        val callbackCount = new AtomicInteger();
+
+        val job = createJob(ExtractionOptions.defaults()
+                .withSkipExisting(true)
+                .withPipelineCapacity(1)
+                .withResourceUnpackedCallback(resource ->
+                        callbackCount.incrementAndGet()));
+
+        job.run();
+
+        assertEquals(1, job.getSkippedCount());
+        assertEquals(9, callbackCount.get());
+    }
+
+    @Test
+    void pipelinedRunLeavesNoTemporaryFiles() throws IOException {
+        createJob(ExtractionOptions.defaults()
+                .withThreads(4)
+                .withPipelineCapacity(1)).run();
+
+        try (val files = Files.list(outputDirectory.toPath())) {
+            assertEquals(9, files.count());
+        }
+    }
+
+    private ExtractionJob createJob(ExtractionOptions options) {
+        try {
+            return unpacker.createExtractionJob(outputDirectory,
+                    unpacker.getAllResources(), options);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
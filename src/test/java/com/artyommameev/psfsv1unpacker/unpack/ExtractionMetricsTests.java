@@ -0,0 +1,163 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtractionMetricsTests {
+
+    @TempDir
+    Path tempDir;
+
+    private PsFsV1Unpacker unpacker;
+    private ExtractionMetrics metrics;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        for (int i = 0; i < 10; i++) {
+            payloads.put("file" + i, new byte[100 * (i + 1)]);
+        }
+
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        metrics = new ExtractionMetrics();
+
+        unpacker = new PsFsV1Unpacker(archive);
+        unpacker.setExtractionListener(metrics);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        unpacker.close();
+    }
+
+    @Test
+    void metricsCountUnpackedBytesAndResources() throws IOException {
+        val outputDirectory = tempDir.resolve("out").toFile();
+        outputDirectory.mkdir();
+
+        unpacker.unpackResources(outputDirectory, unpacker.getAllResources(),
+                ExtractionOptions.defaults().withThreads(4));
+
+        assertEquals(10, metrics.getResourcesUnpacked());
+        assertEquals(5500, metrics.getBytesUnpacked());
+        assertTrue(metrics.getMegabytesPerSecond() > 0);
+        assertTrue(metrics.getRecentMegabytesPerSecond() > 0);
+        assertTrue(metrics.getIndexParseMillis() > 0);
+        assertEquals(10, metrics.getOpenLatency().getCount());
+        assertEquals(10, metrics.getTransferLatency().getCount());
+        assertEquals(10, metrics.getTotalLatency().getCount());
+        assertTrue(metrics.getTotalLatency().getMax() >=
+                metrics.getTransferLatency().getMax());
+    }
+
+    @Test
+    void recentMegabytesPerSecondCountsOnlyLastFiveSeconds() {
+        val time = new AtomicLong();
+        val clockMetrics = new ExtractionMetrics(time::get);
+
+        clockMetrics.resourceUnpacked(createResource(10_000_000), 0, 0, 0);
+
+        time.set(TimeUnit.MILLISECONDS.toNanos(10_000));
+        clockMetrics.resourceUnpacked(createResource(4_900_000), 0, 0, 0);
+
+        // the window is the last nine buckets and the current one up to now
+        time.set(TimeUnit.MILLISECONDS.toNanos(10_400));
+
+        assertEquals(1.0, clockMetrics.getRecentMegabytesPerSecond(), 1e-9);
+        assertEquals(14.9 / 10.4, clockMetrics.getMegabytesPerSecond(),
+                1e-9);
+    }
+
+    @Test
+    void recentMegabytesPerSecondCountsTimeSinceStartIfShorter() {
+        val time = new AtomicLong();
+        val clockMetrics = new ExtractionMetrics(time::get);
+
+        clockMetrics.resourceUnpacked(createResource(1_000_000), 0, 0, 0);
+
+        time.set(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals(0.5, clockMetrics.getRecentMegabytesPerSecond(), 1e-9);
+    }
+
+    @Test
+    void recentMegabytesPerSecondIsZeroAfterStall() {
+        val time = new AtomicLong();
+        val clockMetrics = new ExtractionMetrics(time::get);
+
+        clockMetrics.resourceUnpacked(createResource(1_000_000), 0, 0, 0);
+
+        time.set(TimeUnit.SECONDS.toNanos(6));
+
+        assertEquals(0, clockMetrics.getRecentMegabytesPerSecond());
+        assertTrue(clockMetrics.getMegabytesPerSecond() > 0);
+    }
+
+    @Test
+    void resetClearsRecentMegabytesPerSecond() {
+        val time = new AtomicLong();
+        val clockMetrics = new ExtractionMetrics(time::get);
+
+        clockMetrics.resourceUnpacked(createResource(1_000_000), 0, 0, 0);
+
+        time.set(TimeUnit.SECONDS.toNanos(1));
+        clockMetrics.reset();
+        time.set(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals(0, clockMetrics.getRecentMegabytesPerSecond());
+    }
+
+    @Test
+    void resetClearsMetrics() throws IOException {
+        unpacker.unpackResource(tempDir.toFile(),
+                unpacker.getAllResources().get(0));
+
+        metrics.reset();
+
+        assertEquals(0, metrics.getResourcesUnpacked());
+        assertEquals(0, metrics.getBytesUnpacked());
+        assertEquals(0, metrics.getTotalLatency().getCount());
+    }
+
+    @Test
+    void metricsCanBeRegisteredAsMXBean() throws Exception {
+        val server = ManagementFactory.getPlatformMBeanServer();
+        val name = new ObjectName(
+                "com.artyommameev.psfsv1unpacker:type=ExtractionTest");
+
+        unpacker.unpackResource(tempDir.toFile(),
+                unpacker.getAllResources().get(1));
+
+        server.registerMBean(metrics, name);
+
+        try {
+            assertEquals(1L, server.getAttribute(name, "ResourcesUnpacked"));
+            assertEquals(200L, server.getAttribute(name, "BytesUnpacked"));
+            assertTrue((Double) server.getAttribute(name,
+                    "RecentMegabytesPerSecond") > 0);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static Resource createResource(int size) {
+        return new Resource("file", size, 16);
+    }
+}
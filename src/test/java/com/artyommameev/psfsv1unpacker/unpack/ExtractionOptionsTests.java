@@ -0,0 +1,53 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class ExtractionOptionsTests {
+
+    @Test
+    void defaultsUseOneThreadPerAvailableProcessor() {
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                ExtractionOptions.defaults().getThreads());
+    }
+
+    @Test
+    void defaultsOverwriteExistingFiles() {
+        assertFalse(ExtractionOptions.defaults().isSkipExisting());
+        assertFalse(ExtractionOptions.defaults().isVerifyChecksums());
+    }
+
+    @Test
+    void defaultsOrderResourcesByOffset() {
+        assertTrue(ExtractionOptions.defaults().isOrderByOffset());
+    }
+
+    @Test
+    void defaultsDoNotUsePipeline() {
+        assertEquals(0, ExtractionOptions.defaults().getPipelineCapacity());
+    }
+
+    @Test
+    void withPipelineCapacityThrowsIllegalArgumentExceptionIfCapacityIsNegative() {
+        assertThrows(IllegalArgumentException.class, () ->
+                ExtractionOptions.defaults().withPipelineCapacity(-1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, -Integer.MAX_VALUE})
+    void withThreadsThrowsIllegalArgumentExceptionIfThreadsIsNotPositive(
+            int threads) {
+        assertThrows(IllegalArgumentException.class, () ->
+                ExtractionOptions.defaults().withThreads(threads));
+    }
+
+    @Test
+    void withResourceUnpackedCallbackThrowsNullPointerExceptionIfCallbackIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                ExtractionOptions.defaults().withResourceUnpackedCallback(null));
+    }
+}
@@ -0,0 +1,94 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ExtractionPlanTests {
+
+    @Test
+    void createSortsResourcesByOffsetAndGroupsAdjacentOnes() {
+        val first = new Resource("first", 100, 1000);
+        val second = new Resource("second", 100, 1116);
+        val third = new Resource("third", 100, 1232);
+
+        val runs = ExtractionPlan.create(List.of(third, first, second));
+
+        assertEquals(List.of(List.of(first, second, third)),
+                getResources(runs));
+    }
+
+    @Test
+    void createSplitsRunsAtLargeGaps() {
+        val first = new Resource("first", 100, 1000);
+        val second = new Resource("second", 100,
+                1100 + ExtractionPlan.MAX_GAP + 1);
+
+        val runs = ExtractionPlan.create(List.of(second, first));
+
+        assertEquals(List.of(List.of(first), List.of(second)),
+                getResources(runs));
+    }
+
+    @Test
+    void createLimitsSizeOfRuns() {
+        int halfRun = ExtractionPlan.MAX_RUN_SIZE / 2;
+
+        val first = new Resource("first", halfRun, 16);
+        val second = new Resource("second", halfRun, 32 + halfRun);
+        val large = new Resource("large", ExtractionPlan.MAX_RUN_SIZE * 2,
+                48 + halfRun * 2);
+
+        val runs = ExtractionPlan.create(List.of(first, second, large));
+
+        assertEquals(List.of(List.of(first), List.of(second), List.of(large)),
+                getResources(runs));
+    }
+
+    @Test
+    void createLimitsCountOfResourcesInRuns() {
+        val resources = new ArrayList<Resource>();
+
+        for (int i = 0; i < ExtractionPlan.MAX_RUN_RESOURCES * 2 + 1; i++) {
+            resources.add(new Resource("file" + i, 1, 16 + i * 17));
+        }
+
+        val runs = ExtractionPlan.create(resources);
+
+        assertEquals(3, runs.size());
+        assertEquals(ExtractionPlan.MAX_RUN_RESOURCES,
+                runs.get(0).getResources().size());
+    }
+
+    @Test
+    void createGroupsOverlappingResources() {
+        val resource = new Resource("resource", 100, 1000);
+        val copy = new Resource("copy", 100, 1000);
+
+        assertEquals(1, ExtractionPlan.create(List.of(resource, copy))
+                .size());
+    }
+
+    @Test
+    void createUnorderedKeepsOrderOfResources() {
+        val first = new Resource("first", 100, 1000);
+        val second = new Resource("second", 100, 1116);
+
+        val runs = ExtractionPlan.createUnordered(List.of(second, first));
+
+        assertEquals(List.of(List.of(second), List.of(first)),
+                getResources(runs));
+    }
+
+    private List<List<Resource>> getResources(List<ExtractionPlan.Run> runs) {
+        return runs.stream()
+                .map(ExtractionPlan.Run::getResources)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,226 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class IndexCacheTests {
+
+    @TempDir
+    Path tempDir;
+
+    private File archive;
+    private IndexCache indexCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        for (int i = 0; i < 100; i++) {
+            payloads.put("file" + i + ".bin", new byte[i + 1]);
+        }
+
+        archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        indexCache = new IndexCache(tempDir.resolve("cache").toFile());
+    }
+
+    @Test
+    void constructorThrowsNullPointerExceptionIfDirectoryIsNull() {
+        assertThrows(NullPointerException.class, () -> new IndexCache(null));
+    }
+
+    @Test
+    void cachedTableIsEqualToParsedTable() throws IOException {
+        List<Resource> expected;
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            expected = List.copyOf(unpacker.getAllResources());
+        }
+
+        val cachedTable = indexCache.load(archive, getHeader());
+
+        assertNotNull(cachedTable);
+        assertEquals(expected, cachedTable.asList());
+        assertEquals(57, cachedTable.indexOf("file57.bin"));
+        assertEquals(-1, cachedTable.indexOf("file100.bin"));
+    }
+
+    @Test
+    void unpackerUsesCachedTable() throws IOException {
+        List<Resource> expected;
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            expected = List.copyOf(unpacker.getAllResources());
+        }
+
+        corruptIndexKeepingFingerprint();
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            assertEquals(expected, unpacker.getAllResources());
+        }
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            assertThrows(IllegalArgumentException.class,
+                    unpacker::getAllResources);
+        }
+    }
+
+    @Test
+    void loadReturnsNullIfArchiveIsNotCached() throws IOException {
+        assertNull(indexCache.load(archive, getHeader()));
+    }
+
+    @Test
+    void loadReturnsNullIfArchiveIsModified() throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            unpacker.getAllResources();
+        }
+
+        Files.write(archive.toPath(), new byte[1],
+                StandardOpenOption.APPEND);
+
+        assertNull(indexCache.load(archive, getHeader()));
+    }
+
+    @Test
+    void loadReturnsNullIfCacheFileIsCorrupted() throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            unpacker.getAllResources();
+        }
+
+        try (val cacheFiles = Files.list(tempDir.resolve("cache"))) {
+            for (val cacheFile : (Iterable<Path>) cacheFiles::iterator) {
+                Files.write(cacheFile, new byte[]{1, 2, 3});
+            }
+        }
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            assertNull(indexCache.load(archive, getHeader()));
+            assertEquals(100, unpacker.getAllResources().size());
+        }
+    }
+
+    @Test
+    void loadDeletesCacheFileIfTableIsDamaged() throws IOException {
+        List<Resource> expected;
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            expected = List.copyOf(unpacker.getAllResources());
+        }
+
+        Path cacheFile;
+
+        try (val cacheFiles = Files.list(tempDir.resolve("cache"))) {
+            cacheFile = cacheFiles.findFirst().orElseThrow();
+        }
+
+        // one byte of the last offset is changed, which keeps it in range
+        try (val randomAccessFile = new RandomAccessFile(cacheFile.toFile(),
+                "rw")) {
+            // after the cache header, the table header, the sizes and all
+            // offsets but the last
+            long position = 36 + 3 * Integer.BYTES + 199 * Integer.BYTES;
+
+            randomAccessFile.seek(position);
+
+            int value = randomAccessFile.read();
+
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value + 4);
+        }
+
+        assertNull(indexCache.load(archive, getHeader()));
+        assertFalse(Files.exists(cacheFile));
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            assertEquals(expected, unpacker.getAllResources());
+        }
+
+        assertNotNull(indexCache.load(archive, getHeader()));
+    }
+
+    @Test
+    void storeEvictsLeastRecentlyUsedFilesOverMaxSize() throws IOException {
+        val otherArchive = tempDir.resolve("other.dat").toFile();
+        Files.copy(archive.toPath(), otherArchive.toPath());
+
+        try (val unpacker = new PsFsV1Unpacker(archive, indexCache)) {
+            unpacker.getAllResources();
+        }
+
+        Path cacheFile;
+
+        try (val cacheFiles = Files.list(tempDir.resolve("cache"))) {
+            cacheFile = cacheFiles.findFirst().orElseThrow();
+        }
+
+        long cacheFileSize = Files.size(cacheFile);
+
+        Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(0));
+
+        val limitedCache = new IndexCache(tempDir.resolve("cache").toFile(),
+                cacheFileSize + cacheFileSize / 2);
+
+        try (val unpacker = new PsFsV1Unpacker(otherArchive,
+                limitedCache)) {
+            unpacker.getAllResources();
+        }
+
+        assertNull(limitedCache.load(archive, getHeader()));
+        assertNotNull(limitedCache.load(otherArchive, getHeader()));
+    }
+
+    @Test
+    void constructorThrowsIllegalArgumentExceptionIfMaxSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new IndexCache(tempDir.toFile(), 0));
+    }
+
+    @Test
+    void unpackerParsesIndexIfCacheIsNotWritable() throws IOException {
+        val notDirectory = tempDir.resolve("file").toFile();
+        Files.write(notDirectory.toPath(), new byte[1]);
+
+        try (val unpacker = new PsFsV1Unpacker(archive,
+                new IndexCache(notDirectory))) {
+            assertEquals(100, unpacker.getAllResources().size());
+        }
+    }
+
+    private PsFsV1Header getHeader() throws IOException {
+        try (val randomAccessFile = new RandomAccessFile(archive, "r")) {
+            byte[] headerBytes = new byte[PsFsV1Header.SIZE];
+            randomAccessFile.readFully(headerBytes);
+
+            return PsFsV1Header.parse(headerBytes);
+        }
+    }
+
+    private void corruptIndexKeepingFingerprint() throws IOException {
+        val lastModified = Files.getLastModifiedTime(archive.toPath());
+
+        try (val randomAccessFile = new RandomAccessFile(archive, "rw")) {
+            randomAccessFile.seek(PsFsV1Header.SIZE);
+            randomAccessFile.write(new byte[PsFsV1Index.NAME_SIZE]);
+        }
+
+        Files.setLastModifiedTime(archive.toPath(), lastModified);
+    }
+}
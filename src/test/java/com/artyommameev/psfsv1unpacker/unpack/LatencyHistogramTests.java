@@ -0,0 +1,70 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTests {
+
+    private LatencyHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    void emptyHistogramReturnsZeros() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    void recordUpdatesCountMeanAndMax() {
+        histogram.record(100);
+        histogram.record(300);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(400 / 3.0, histogram.getMean());
+        assertEquals(300, histogram.getMax());
+    }
+
+    @Test
+    void getPercentileReturnsUpperBoundOfBucket() {
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+
+        histogram.record(1_000_000);
+
+        assertEquals(1023, histogram.getPercentile(50));
+        assertEquals(1023, histogram.getPercentile(99));
+        assertEquals(1_000_000, histogram.getPercentile(100));
+        assertTrue(histogram.getPercentile(0) <= 1023);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {-1, 101})
+    void getPercentileThrowsIllegalArgumentExceptionIfOutOfRange(
+            double percentile) {
+        assertThrows(IllegalArgumentException.class, () ->
+                histogram.getPercentile(percentile));
+    }
+
+    @Test
+    void resetClearsHistogram() {
+        histogram.record(1000);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
@@ -0,0 +1,117 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class MappedPsFsV1ArchiveTests {
+
+    private MappedPsFsV1Archive mappedArchive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mappedArchive = new MappedPsFsV1Archive(getTestFile("test.dat"));
+    }
+
+    @Test
+    void constructorThrowsNullPointerExceptionIfFileIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                mappedArchive = new MappedPsFsV1Archive(null));
+    }
+
+    @Test
+    void constructorThrowsIllegalArgumentExceptionIfHeaderIsWrong() {
+        assertThrows(IllegalArgumentException.class, () -> mappedArchive =
+                new MappedPsFsV1Archive(getTestFile("test_wrong_header.dat")));
+    }
+
+    @Test
+    void constructorThrowsIOExceptionIfHeaderIsTruncated() {
+        assertThrows(IOException.class, () -> mappedArchive =
+                new MappedPsFsV1Archive(getTestFile(
+                        "test_header_corrupted.dat")));
+    }
+
+    @Test
+    void getAllResourcesGetsSameResourcesAsUnpacker() throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(getTestFile("test.dat"))) {
+            val expected = unpacker.getAllResources();
+            val actual = mappedArchive.getAllResources();
+
+            assertEquals(expected.size(), actual.size());
+
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getName(),
+                        actual.get(i).getName());
+                assertEquals(expected.get(i).getSize(),
+                        actual.get(i).getSize());
+                assertEquals(expected.get(i).getOffset(),
+                        actual.get(i).getOffset());
+            }
+        }
+    }
+
+    @Test
+    void getResourceDataReturnsReadOnlyViewOfResourceData()
+            throws IOException {
+        val resources = mappedArchive.getAllResources();
+
+        val first = mappedArchive.getResourceData(resources.get(0));
+        val second = mappedArchive.getResourceData(resources.get(1));
+
+        assertEquals("FILENO1!", StandardCharsets.UTF_8.decode(first)
+                .toString());
+        assertEquals("FILENO2!", StandardCharsets.UTF_8.decode(second)
+                .toString());
+
+        val data = mappedArchive.getResourceData(resources.get(0));
+
+        assertTrue(data.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> data.put(
+                (byte) 0));
+    }
+
+    @Test
+    void getResourceDataDoesNotCopyResourceToHeap(@TempDir Path tempDir)
+            throws IOException {
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, Map.of("file", new byte[1024]));
+
+        mappedArchive = new MappedPsFsV1Archive(archive);
+
+        val data = mappedArchive.getResourceData(
+                mappedArchive.getAllResources().get(0));
+
+        assertTrue(data.isDirect());
+        assertEquals(1024, data.remaining());
+    }
+
+    @Test
+    void getResourceDataThrowsIOExceptionIfResourceIsOutOfFileBounds() {
+        assertThrows(IOException.class, () -> mappedArchive.getResourceData(
+                new Resource("test", 1024, 300)));
+    }
+
+    @Test
+    void getResourceDataThrowsNullPointerExceptionIfResourceIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                mappedArchive.getResourceData(null));
+    }
+
+    private File getTestFile(String name) {
+        return new File(getClass().getClassLoader().getResource(name)
+                .getPath());
+    }
+}
@@ -0,0 +1,144 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameIndexTests {
+
+    private static final String[] NAMES = {"Textures.pak", "sound_01.wav",
+            "sound_02.wav", "music.ogg", "texture_a.dds", "aaaaaa.bin", "ab"};
+
+    private PsFsV1Unpacker unpacker;
+    private NameIndex nameIndex;
+
+    @BeforeEach
+    void setUp(@TempDir Path tempDir) throws IOException {
+        val archive = new File(tempDir.toFile(), "names.dat");
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        for (val name : NAMES) {
+            payloads.put(name, new byte[]{1});
+        }
+
+        TestArchives.write(archive, payloads);
+
+        unpacker = new PsFsV1Unpacker(archive);
+        nameIndex = unpacker.getNameIndex();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        unpacker.close();
+    }
+
+    @Test
+    void searchFindsSubstrings() {
+        assertEquals(List.of("sound_01.wav", "sound_02.wav"),
+                names(nameIndex.search("sound")));
+        assertEquals(List.of("sound_02.wav"), names(nameIndex.search("d_02")));
+    }
+
+    @Test
+    void searchIsCaseInsensitive() {
+        assertEquals(List.of("Textures.pak", "texture_a.dds"),
+                names(nameIndex.search("TEXTURE")));
+    }
+
+    @Test
+    void searchMatchesGlobsAgainstWholeNames() {
+        assertEquals(List.of("sound_01.wav", "sound_02.wav"),
+                names(nameIndex.search("*.wav")));
+        assertEquals(List.of("sound_01.wav"),
+                names(nameIndex.search("sound_?1.*")));
+        assertTrue(names(nameIndex.search("sound*.ogg")).isEmpty());
+        assertEquals(List.of("ab"), names(nameIndex.search("a?")));
+    }
+
+    @Test
+    void searchTreatsOtherCharactersOfGlobsLiterally() {
+        assertTrue(names(nameIndex.search("sound_0[12].wav*")).isEmpty());
+        assertEquals(List.of("music.ogg"), names(nameIndex.search("*c.o*")));
+    }
+
+    @Test
+    void searchFindsNamesWithRepeatedTrigrams() {
+        assertEquals(List.of("aaaaaa.bin"),
+                names(nameIndex.search("aaaaa")));
+    }
+
+    @Test
+    void searchComparesAllNamesIfQueryIsShorterThanTrigram() {
+        assertEquals(List.of("Textures.pak"), names(nameIndex.search("K")));
+        assertEquals(List.of("sound_01.wav", "sound_02.wav"),
+                names(nameIndex.search("wa")));
+        assertEquals(NAMES.length, nameIndex.search("").size());
+    }
+
+    @Test
+    void searchReturnsNoMatchesIfTrigramIsUnknown() {
+        assertEquals(0, nameIndex.search("xyz").size());
+        assertEquals(0, nameIndex.search("sound_03").size());
+    }
+
+    @Test
+    void resultReturnsTableIndexes() {
+        val result = nameIndex.search("music");
+
+        assertEquals(1, result.size());
+        assertEquals(3, result.getTableIndex(0));
+        assertEquals("music.ogg", result.getResources().get(0).getName());
+        assertEquals("music", result.getQuery());
+    }
+
+    @Test
+    void refineNarrowsResultByLongerQuery() {
+        val result = nameIndex.search("so").refine("sound_0").refine(
+                "sound_01");
+
+        assertEquals(List.of("sound_01.wav"), names(result));
+        assertEquals("sound_01", result.getQuery());
+    }
+
+    @Test
+    void refineSearchesIndexIfQueryIsNotLonger() {
+        val result = nameIndex.search("sound_01").refine("sound");
+
+        assertEquals(List.of("sound_01.wav", "sound_02.wav"), names(result));
+        assertEquals(List.of("music.ogg"),
+                names(result.refine("*.ogg")));
+    }
+
+    @Test
+    void searchThrowsNullPointerExceptionIfQueryIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                nameIndex.search(null));
+    }
+
+    @Test
+    void getNameIndexReturnsSameIndex() throws IOException {
+        assertSame(nameIndex, unpacker.getNameIndex());
+        assertSame(unpacker.getResourceTable(), nameIndex.getResourceTable());
+    }
+
+    private static List<String> names(NameIndex.Result result) {
+        val names = new ArrayList<String>();
+
+        for (val resource : result.getResources()) {
+            names.add(resource.getName());
+        }
+
+        return names;
+    }
+}
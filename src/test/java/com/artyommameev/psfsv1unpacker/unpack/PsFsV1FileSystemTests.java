@@ -0,0 +1,199 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PsFsV1FileSystemTests {
+
+    @TempDir
+    Path tempDir;
+
+    private File base;
+    private File patch;
+    private PsFsV1FileSystem fileSystem;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        base = tempDir.resolve("base.dat").toFile();
+        patch = tempDir.resolve("patch.dat").toFile();
+
+        val basePayloads = new LinkedHashMap<String, byte[]>();
+        basePayloads.put("shared.txt", bytes("base shared"));
+        basePayloads.put("base.txt", bytes("base only"));
+
+        val patchPayloads = new LinkedHashMap<String, byte[]>();
+        patchPayloads.put("patch.txt", bytes("patch only"));
+        patchPayloads.put("shared.txt", bytes("patched"));
+
+        TestArchives.write(base, basePayloads);
+        TestArchives.write(patch, patchPayloads);
+
+        fileSystem = new PsFsV1FileSystem(List.of(base, patch));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fileSystem.close();
+    }
+
+    @Test
+    void namespaceContainsNamesOfAllArchivesOnce() {
+        assertEquals(3, fileSystem.getResourceCount());
+        assertEquals(Set.of("shared.txt", "base.txt", "patch.txt"),
+                fileSystem.getResourceNames());
+        assertTrue(fileSystem.containsResource("base.txt"));
+        assertFalse(fileSystem.containsResource("missing.txt"));
+    }
+
+    @Test
+    void laterArchiveOverridesEarlierArchive() throws IOException {
+        assertEquals("patched", read("shared.txt"));
+        assertEquals(patch.getCanonicalFile(),
+                fileSystem.findArchive("shared.txt"));
+        assertEquals(base.getCanonicalFile(),
+                fileSystem.findArchive("base.txt"));
+    }
+
+    @Test
+    void readResourceReadsFromProvidingArchive() throws IOException {
+        assertEquals("base only", read("base.txt"));
+        assertEquals("patch only", read("patch.txt"));
+    }
+
+    @Test
+    void findResourceReturnsResourceOfProvidingArchive() throws IOException {
+        try (val unpacker = new PsFsV1Unpacker(patch)) {
+            assertEquals(unpacker.findResource("shared.txt"),
+                    fileSystem.findResource("shared.txt"));
+        }
+
+        assertNull(fileSystem.findResource("missing.txt"));
+        assertNull(fileSystem.findArchive("missing.txt"));
+    }
+
+    @Test
+    void openResourceStreamsResourceData() throws IOException {
+        try (val stream = Channels.newInputStream(
+                fileSystem.openResource("shared.txt"))) {
+            assertEquals("patched", new String(stream.readAllBytes(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void unpackResourceWritesResourceData() throws IOException {
+        val output = new ByteArrayOutputStream();
+
+        fileSystem.unpackResource("base.txt", Channels.newChannel(output));
+
+        assertEquals("base only", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void readMethodsThrowNoSuchFileExceptionIfNameIsMissing() {
+        assertThrows(NoSuchFileException.class, () ->
+                fileSystem.readResource("missing.txt",
+                        ByteBuffer.allocate(16)));
+        assertThrows(NoSuchFileException.class, () ->
+                fileSystem.openResource("missing.txt"));
+    }
+
+    @Test
+    void mountOverridesMountedArchives() throws IOException {
+        val update = tempDir.resolve("update.dat").toFile();
+
+        val payloads = new LinkedHashMap<String, byte[]>();
+        payloads.put("base.txt", bytes("updated"));
+
+        TestArchives.write(update, payloads);
+
+        fileSystem.mount(update);
+
+        assertEquals("updated", read("base.txt"));
+        assertEquals("patched", read("shared.txt"));
+        assertEquals(3, fileSystem.getArchives().size());
+    }
+
+    @Test
+    void mountThrowsIllegalArgumentExceptionIfArchiveIsMounted() {
+        assertThrows(IllegalArgumentException.class, () ->
+                fileSystem.mount(base));
+    }
+
+    @Test
+    void constructorThrowsIllegalArgumentExceptionIfHeaderIsWrong()
+            throws IOException {
+        val invalid = tempDir.resolve("invalid.dat");
+
+        Files.write(invalid, new byte[32]);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                new PsFsV1FileSystem(List.of(base, invalid.toFile())));
+    }
+
+    @Test
+    void readResourceThrowsIOExceptionIfFileSystemIsClosed()
+            throws IOException {
+        fileSystem.close();
+
+        assertThrows(IOException.class, () -> read("base.txt"));
+    }
+
+    @Test
+    void mountThrowsIllegalStateExceptionIfFileSystemIsClosed()
+            throws IOException {
+        val update = tempDir.resolve("update.dat").toFile();
+
+        val payloads = new LinkedHashMap<String, byte[]>();
+        payloads.put("base.txt", bytes("updated"));
+
+        TestArchives.write(update, payloads);
+
+        fileSystem.close();
+
+        assertThrows(IllegalStateException.class, () ->
+                fileSystem.mount(update));
+        assertEquals(2, fileSystem.getArchives().size());
+    }
+
+    @Test
+    void methodsThrowNullPointerExceptionIfArgumentIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                new PsFsV1FileSystem(null));
+        assertThrows(NullPointerException.class, () ->
+                fileSystem.mount(null));
+        assertThrows(NullPointerException.class, () ->
+                fileSystem.findResource(null));
+    }
+
+    private String read(String name) throws IOException {
+        val buffer = ByteBuffer.allocate(fileSystem.findResource(name)
+                .getSize());
+
+        fileSystem.readResource(name, buffer);
+
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,14 +3,34 @@ package com.artyommameev.psfsv1unpacker.unpack;
 import com.artyommameev.psfsv1unpacker.domain.Resource;
 import lombok.val;
 import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SuppressWarnings({"ResultOfMethodCallIgnored", "deprecation", "ConstantConditions"})
 public class PsFsV1UnpackerTests {
@@ -24,6 +44,11 @@ public class PsFsV1UnpackerTests {
         psFsV1Unpacker = new PsFsV1Unpacker(new File(testResourceUrl.getPath()));
     }
 
+    @AfterEach
+    void tearDown() throws IOException {
+        psFsV1Unpacker.close();
+    }
+
     @Test
     void constructorThrowsNullPointerExceptionIfFileIsNull() {
         assertThrows(NullPointerException.class, () ->
@@ -80,6 +105,112 @@ public class PsFsV1UnpackerTests {
         });
     }
 
+    @Test
+    void streamResourcesGetsSameResourcesAsGetAllResources()
+            throws IOException {
+        val streamed = psFsV1Unpacker.streamResources()
+                .collect(Collectors.toList());
+
+        assertEquals(psFsV1Unpacker.getAllResources(), streamed);
+        assertEquals(streamed, psFsV1Unpacker.streamResources()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void iterateResourcesDecodesIndexInChunks(@TempDir Path tempDir)
+            throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        for (int i = 0; i < IndexIterator.CHUNK_ENTRIES * 2 + 3; i++) {
+            payloads.put("file" + i, new byte[]{(byte) i});
+        }
+
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val iterator = unpacker.iterateResources();
+            val names = new ArrayList<String>();
+
+            iterator.forEachRemaining(resource -> names.add(
+                    resource.getName()));
+
+            assertEquals(new ArrayList<>(payloads.keySet()), names);
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+    }
+
+    @Test
+    void streamResourcesDoesNotReadIndexBeyondShortCircuit(
+            @TempDir Path tempDir) throws IOException {
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, Map.of("first", new byte[]{1}));
+
+        // the header announces more entries than the file contains
+        try (val file = new RandomAccessFile(archive, "rw")) {
+            file.seek(8);
+            file.writeInt(Integer.reverseBytes(1_000_000));
+        }
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            assertEquals("first", unpacker.streamResources()
+                    .findFirst()
+                    .orElseThrow()
+                    .getName());
+
+            assertThrows(IOException.class, unpacker::getAllResources);
+        }
+    }
+
+    @Test
+    void iterateResourcesThrowsIllegalArgumentExceptionIfEntryIsInvalid(
+            @TempDir Path tempDir) throws IOException {
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, Map.of("first", new byte[]{1}));
+
+        // the stored size consists of the resource header only
+        try (val file = new RandomAccessFile(archive, "rw")) {
+            file.seek(16 + 48);
+            file.writeInt(Integer.reverseBytes(16));
+        }
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val iterator = unpacker.iterateResources();
+
+            assertThrows(IllegalArgumentException.class, iterator::next);
+        }
+    }
+
+    @Test
+    void iterateResourcesThrowsUncheckedIOExceptionIfIndexIsTruncated() {
+        val testCorruptedResourceUrl = getClass().getClassLoader()
+                .getResource("test_corrupted.dat");
+
+        assertThrows(UncheckedIOException.class, () -> {
+            try (val unpacker = new PsFsV1Unpacker(new File(
+                    testCorruptedResourceUrl.getPath()))) {
+                val iterator = unpacker.iterateResources();
+
+                assertEquals("testfile.test", iterator.next().getName());
+
+                iterator.next();
+            }
+        });
+    }
+
+    @Test
+    void findResourceFindsResourceByName() throws IOException {
+        assertEquals(new Resource("testfile2.test", 8, 272),
+                psFsV1Unpacker.findResource("testfile2.test"));
+        assertNull(psFsV1Unpacker.findResource("missing.test"));
+    }
+
+    @Test
+    void containsResourceChecksResourceName() throws IOException {
+        assertTrue(psFsV1Unpacker.containsResource("testfile.test"));
+        assertFalse(psFsV1Unpacker.containsResource("missing.test"));
+    }
+
     @Test
     void unpackResourceThrowsNullPointerExceptionIfDirectoryOrResourceIsNull() {
         assertThrows(NullPointerException.class, () ->
@@ -111,4 +242,335 @@ public class PsFsV1UnpackerTests {
 
         file.delete();
     }
-}
\ No newline at end of file
+
+    @Test
+    void unpackResourceOutputIsIdenticalToPerByteRead(@TempDir Path tempDir)
+            throws IOException {
+        val archive = new File(getClass().getClassLoader()
+                .getResource("test.dat").getPath());
+
+        for (val resource : psFsV1Unpacker.getAllResources()) {
+            psFsV1Unpacker.unpackResource(tempDir.toFile(), resource);
+
+            assertArrayEquals(readPerByte(archive, resource),
+                    Files.readAllBytes(tempDir.resolve(resource.getName())));
+        }
+    }
+
+    @Test
+    void unpackResourceUnpacksLargeResources(@TempDir Path tempDir)
+            throws IOException {
+        val payload = new byte[3 * 1024 * 1024 + 7];
+        new Random(42).nextBytes(payload);
+
+        val archive = tempDir.resolve("large.dat").toFile();
+        TestArchives.write(archive, Map.of("large.bin", payload));
+
+        val outputDirectory = Files.createDirectory(tempDir.resolve("out"));
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val resource = unpacker.getAllResources().get(0);
+
+            unpacker.unpackResource(outputDirectory.toFile(), resource);
+
+            val actual = Files.readAllBytes(
+                    outputDirectory.resolve("large.bin"));
+
+            assertArrayEquals(readPerByte(archive, resource), actual);
+            assertArrayEquals(payload, actual);
+        }
+    }
+
+    @Test
+    void unpackResourceThrowsIOExceptionIfResourceIsOutOfFileBounds(
+            @TempDir Path tempDir) {
+        assertThrows(IOException.class, () -> psFsV1Unpacker.unpackResource(
+                tempDir.toFile(), new Resource("test", 1024, 300)));
+    }
+
+    @Test
+    void unpackResourcesThrowsNullPointerExceptionIfArgumentIsNull() {
+        val options = ExtractionOptions.defaults();
+
+        assertThrows(NullPointerException.class, () ->
+                psFsV1Unpacker.unpackResources(null, List.of(), options));
+
+        assertThrows(NullPointerException.class, () ->
+                psFsV1Unpacker.unpackResources(new File("./"), null,
+                        options));
+
+        assertThrows(NullPointerException.class, () ->
+                psFsV1Unpacker.unpackResources(new File("./"), List.of(),
+                        null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 8})
+    void unpackResourcesUnpacksAllResources(int threads,
+                                            @TempDir Path tempDir)
+            throws IOException {
+        val unpacked = new ArrayList<Resource>();
+
+        psFsV1Unpacker.unpackResources(tempDir.toFile(),
+                psFsV1Unpacker.getAllResources(), ExtractionOptions.defaults()
+                        .withThreads(threads)
+                        .withResourceUnpackedCallback(unpacked::add));
+
+        assertEquals(2, unpacked.size());
+
+        assertEquals("FILENO1!", Files.readString(
+                tempDir.resolve("testfile.test")));
+        assertEquals("FILENO2!", Files.readString(
+                tempDir.resolve("testfile2.test")));
+    }
+
+    @Test
+    void unpackResourcesThrowsIOExceptionIfResourceCannotBeUnpacked(
+            @TempDir Path tempDir) {
+        assertThrows(IOException.class, () -> psFsV1Unpacker.unpackResources(
+                tempDir.toFile(), List.of(new Resource("test", 8, 240),
+                        new Resource("test2", 1024, 300)),
+                ExtractionOptions.defaults().withThreads(2)));
+    }
+
+    @Test
+    void unpackResourceStreamsResourceToChannel(@TempDir Path tempDir)
+            throws IOException {
+        val payload = new byte[5 * 1024 * 1024 + 3];
+        new Random(7).nextBytes(payload);
+
+        val archive = tempDir.resolve("large.dat").toFile();
+        TestArchives.write(archive, Map.of("large.bin", payload));
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val outputStream = new ByteArrayOutputStream();
+
+            unpacker.unpackResource(unpacker.getAllResources().get(0),
+                    Channels.newChannel(outputStream));
+
+            assertArrayEquals(payload, outputStream.toByteArray());
+        }
+    }
+
+    @Test
+    void unpackResourceToChannelCopiesIfTransferMakesNoProgress()
+            throws IOException {
+        val resource = psFsV1Unpacker.getAllResources().get(1);
+        val outputStream = new ByteArrayOutputStream();
+        val outputChannel = Channels.newChannel(outputStream);
+        val calls = new AtomicInteger();
+
+        // the first write accepts no bytes, as a full non-blocking channel
+        psFsV1Unpacker.unpackResource(resource, new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                return calls.getAndIncrement() == 0 ? 0 :
+                        outputChannel.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        val expected = ByteBuffer.allocate(resource.getSize());
+        psFsV1Unpacker.readResource(resource, expected);
+
+        assertArrayEquals(expected.array(), outputStream.toByteArray());
+    }
+
+    @Test
+    void unpackResourceToChannelThrowsIOExceptionIfChannelAcceptsNoData()
+            throws IOException {
+        val resource = psFsV1Unpacker.getAllResources().get(1);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThrows(IOException.class, () ->
+                        psFsV1Unpacker.unpackResource(resource,
+                                new WritableByteChannel() {
+                                    @Override
+                                    public int write(ByteBuffer source) {
+                                        return 0;
+                                    }
+
+                                    @Override
+                                    public boolean isOpen() {
+                                        return true;
+                                    }
+
+                                    @Override
+                                    public void close() {
+                                    }
+                                })));
+    }
+
+    @Test
+    void openResourceReadsResourceThroughSmallBuffer() throws IOException {
+        val resource = psFsV1Unpacker.getAllResources().get(1);
+
+        try (val channel = psFsV1Unpacker.openResource(resource)) {
+            val buffer = ByteBuffer.allocate(3);
+            val outputStream = new ByteArrayOutputStream();
+
+            while (channel.read(buffer) != -1) {
+                outputStream.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+
+            assertEquals("FILENO2!", outputStream.toString(
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void openResourceCanBeReadAsInputStream() throws IOException {
+        val resource = psFsV1Unpacker.getAllResources().get(0);
+
+        try (val inputStream = Channels.newInputStream(
+                psFsV1Unpacker.openResource(resource))) {
+            assertEquals("FILENO1!", new String(inputStream.readAllBytes(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void openResourceChannelThrowsClosedChannelExceptionIfClosed()
+            throws IOException {
+        val channel = psFsV1Unpacker.openResource(
+                psFsV1Unpacker.getAllResources().get(0));
+
+        channel.close();
+
+        assertThrows(ClosedChannelException.class, () ->
+                channel.read(ByteBuffer.allocate(8)));
+    }
+
+    @Test
+    void openResourceChannelThrowsIOExceptionIfResourceIsOutOfFileBounds()
+            throws IOException {
+        val channel = psFsV1Unpacker.openResource(
+                new Resource("test", 1024, 300));
+
+        val buffer = ByteBuffer.allocate(64);
+
+        assertThrows(IOException.class, () -> {
+            while (channel.read(buffer) != -1) {
+                buffer.clear();
+            }
+        });
+    }
+
+    @Test
+    void readResourceReadsResourceAtBufferPosition() throws IOException {
+        val resource = psFsV1Unpacker.getAllResources().get(1);
+        val buffer = ByteBuffer.allocateDirect(12).position(2);
+
+        psFsV1Unpacker.readResource(resource, buffer);
+
+        assertEquals(10, buffer.position());
+        assertEquals(12, buffer.limit());
+        assertEquals("FILENO2!", StandardCharsets.UTF_8.decode(
+                buffer.flip().position(2)).toString());
+    }
+
+    @Test
+    void readResourceThrowsIllegalArgumentExceptionIfBufferIsTooSmall()
+            throws IOException {
+        val resource = psFsV1Unpacker.getAllResources().get(0);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                psFsV1Unpacker.readResource(resource, ByteBuffer.allocate(7)));
+    }
+
+    @Test
+    void constructorThrowsIOExceptionIfHeaderIsTruncated() {
+        val testCorruptedHeaderResourceUrl = getClass().getClassLoader()
+                .getResource("test_header_corrupted.dat");
+
+        assertThrows(IOException.class, () -> psFsV1Unpacker =
+                new PsFsV1Unpacker(new File(testCorruptedHeaderResourceUrl
+                        .getPath())));
+    }
+
+    @Test
+    void archivesCanBeParsedConcurrently(@TempDir Path tempDir)
+            throws Exception {
+        int archiveCount = 32;
+
+        val archives = new ArrayList<File>();
+
+        for (int i = 0; i < archiveCount; i++) {
+            val payloads = new LinkedHashMap<String, byte[]>();
+
+            for (int j = 0; j <= i; j++) {
+                payloads.put("archive" + i + "_file" + j,
+                        new byte[]{(byte) i, (byte) j});
+            }
+
+            val archive = tempDir.resolve("archive" + i + ".dat").toFile();
+            TestArchives.write(archive, payloads);
+            archives.add(archive);
+        }
+
+        val executor = Executors.newFixedThreadPool(8);
+        val start = new CountDownLatch(1);
+
+        try {
+            val futures = new ArrayList<Future<?>>();
+
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < archiveCount; i++) {
+                    val archiveNumber = i;
+
+                    futures.add(executor.submit(() -> {
+                        start.await();
+
+                        try (val unpacker = new PsFsV1Unpacker(
+                                archives.get(archiveNumber))) {
+                            val resources = unpacker.getAllResources();
+
+                            assertEquals(archiveNumber + 1, resources.size());
+
+                            for (int j = 0; j < resources.size(); j++) {
+                                assertEquals("archive" + archiveNumber +
+                                        "_file" + j,
+                                        resources.get(j).getName());
+                                assertEquals(2, resources.get(j).getSize());
+                            }
+                        }
+
+                        return null;
+                    }));
+                }
+            }
+
+            start.countDown();
+
+            for (val future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private byte[] readPerByte(File archive, Resource resource)
+            throws IOException {
+        try (val randomAccessFile = new RandomAccessFile(archive, "r")) {
+            byte[] data = new byte[resource.getSize()];
+
+            randomAccessFile.seek(resource.getOffset());
+
+            for (int i = 0; i < resource.getSize(); i++) {
+                data[i] = randomAccessFile.readByte();
+            }
+
+            return data;
+        }
+    }
+}
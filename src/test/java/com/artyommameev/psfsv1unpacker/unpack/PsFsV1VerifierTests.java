@@ -0,0 +1,206 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.unpack.VerificationReport.Problem;
+import lombok.Cleanup;
+import lombok.val;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class PsFsV1VerifierTests {
+
+    @TempDir
+    Path tempDir;
+
+    private File archive;
+    private LinkedHashMap<String, byte[]> payloads;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        payloads = new LinkedHashMap<>();
+
+        for (int i = 0; i < 4; i++) {
+            payloads.put("file" + i, new byte[]{(byte) i, 1, 2, 3, 4});
+        }
+
+        val large = new byte[(int) PsFsV1Verifier.MAX_BATCH_SIZE + 1];
+
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 7);
+        }
+
+        payloads.put("large", large);
+
+        archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, payloads);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void verifyReportsValidArchive(int threads) throws IOException {
+        val report = PsFsV1Verifier.verify(archive, threads);
+
+        assertTrue(report.isValid());
+        assertEquals(5, report.getEntryCount());
+        assertEquals(4 * 5 + PsFsV1Verifier.MAX_BATCH_SIZE + 1,
+                report.getBytesChecksummed());
+
+        int index = 0;
+
+        for (val payload : payloads.values()) {
+            val crc32c = new CRC32C();
+            crc32c.update(payload);
+
+            assertEquals(crc32c.getValue(), report.getChecksum(index++));
+        }
+    }
+
+    @Test
+    void verifyReportsInvalidSize() throws IOException {
+        patchEntry(1, PsFsV1Index.SIZE_POSITION, 15);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        assertEquals(1, report.getProblems().size());
+        assertEquals(Problem.Type.INVALID_SIZE,
+                report.getProblems().get(0).getType());
+        assertEquals(1, report.getProblems().get(0).getEntryIndex());
+        assertEquals(VerificationReport.NO_CHECKSUM, report.getChecksum(1));
+        assertNotEquals(VerificationReport.NO_CHECKSUM,
+                report.getChecksum(2));
+    }
+
+    @Test
+    void verifyReportsOffsetInsideIndex() throws IOException {
+        patchEntry(2, PsFsV1Index.OFFSET_POSITION, 0);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        assertEquals(1, report.getProblems().size());
+        assertEquals(Problem.Type.INVALID_OFFSET,
+                report.getProblems().get(0).getType());
+    }
+
+    @Test
+    void verifyReportsResourceHeaderOverlappingIndex() throws IOException {
+        long indexEnd = PsFsV1Header.SIZE + 5L * PsFsV1Index.ENTRY_SIZE;
+
+        // the data starts after the index, but its header overlaps it
+        patchEntry(2, PsFsV1Index.OFFSET_POSITION, (int) indexEnd - 8);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        assertEquals(1, report.getProblems().size());
+        assertEquals(Problem.Type.INVALID_OFFSET,
+                report.getProblems().get(0).getType());
+        assertEquals(2, report.getProblems().get(0).getEntryIndex());
+    }
+
+    @Test
+    void verifyReportsDataPastEndOfFile() throws IOException {
+        patchEntry(3, PsFsV1Index.OFFSET_POSITION, Integer.MAX_VALUE);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        assertEquals(1, report.getProblems().size());
+        assertEquals(Problem.Type.OUT_OF_BOUNDS,
+                report.getProblems().get(0).getType());
+        assertEquals(3, report.getProblems().get(0).getEntryIndex());
+    }
+
+    @Test
+    void verifyReportsOverlappingEntries() throws IOException {
+        // the first entry becomes large enough to cover the second one
+        patchEntry(0, PsFsV1Index.SIZE_POSITION, 16 + 5 + 16 + 1);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        assertEquals(1, report.getProblems().size());
+
+        val problem = report.getProblems().get(0);
+
+        assertEquals(Problem.Type.OVERLAP, problem.getType());
+        assertEquals(1, problem.getEntryIndex());
+        assertTrue(problem.getMessage().contains("entry 0"));
+    }
+
+    @Test
+    void verifyReportsAllProblemsInEntryOrder() throws IOException {
+        patchEntry(3, PsFsV1Index.SIZE_POSITION, -5);
+        patchEntry(0, PsFsV1Index.OFFSET_POSITION, 0);
+        patchEntry(1, 0, 0x20202020);
+        patchEntry(1, 4, 0);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        assertEquals("0 1 3", report.getProblems().stream()
+                .map(problem -> String.valueOf(problem.getEntryIndex()))
+                .collect(Collectors.joining(" ")));
+        assertEquals(Problem.Type.EMPTY_NAME,
+                report.getProblems().get(1).getType());
+    }
+
+    @Test
+    void verifyReportsTruncatedIndex() throws IOException {
+        @Cleanup val channel = FileChannel.open(archive.toPath(),
+                StandardOpenOption.WRITE);
+
+        channel.truncate(PsFsV1Header.SIZE + 2 * PsFsV1Index.ENTRY_SIZE + 10);
+
+        val report = PsFsV1Verifier.verify(archive, 2);
+
+        val lastProblem = report.getProblems().get(
+                report.getProblems().size() - 1);
+
+        assertEquals(2, report.getEntryCount());
+        assertEquals(Problem.Type.TRUNCATED_INDEX, lastProblem.getType());
+        assertEquals(2, lastProblem.getEntryIndex());
+    }
+
+    @Test
+    void verifyThrowsIllegalArgumentExceptionIfHeaderIsWrong() {
+        assertThrows(IllegalArgumentException.class, () ->
+                PsFsV1Verifier.verify(new File(getClass().getClassLoader()
+                        .getResource("test_wrong_header.dat").getPath()), 1));
+    }
+
+    @Test
+    void verifyThrowsIllegalArgumentExceptionIfThreadsIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () ->
+                PsFsV1Verifier.verify(archive, 0));
+    }
+
+    @Test
+    void verifyThrowsNullPointerExceptionIfFileIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                PsFsV1Verifier.verify(null, 1));
+    }
+
+    private void patchEntry(int index, int position, int value)
+            throws IOException {
+        @Cleanup val channel = FileChannel.open(archive.toPath(),
+                StandardOpenOption.WRITE);
+
+        channel.write(ByteBuffer.allocate(Integer.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(0, value),
+                PsFsV1Header.SIZE + (long) index * PsFsV1Index.ENTRY_SIZE +
+                        position);
+    }
+}
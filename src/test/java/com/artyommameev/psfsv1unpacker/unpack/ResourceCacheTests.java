@@ -0,0 +1,155 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class ResourceCacheTests {
+
+    @TempDir
+    Path tempDir;
+
+    private PsFsV1Unpacker unpacker;
+    private ResourceCache resourceCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        payloads.put("first", new byte[]{1, 2, 3, 4});
+        payloads.put("second", new byte[]{5, 6, 7, 8});
+        payloads.put("third", new byte[]{9, 10, 11, 12});
+        payloads.put("large", new byte[16]);
+
+        val archive = tempDir.resolve("archive.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        unpacker = new PsFsV1Unpacker(archive);
+        resourceCache = new ResourceCache(unpacker, 8);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        unpacker.close();
+    }
+
+    @Test
+    void constructorThrowsNullPointerExceptionIfUnpackerIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                new ResourceCache(null, 8));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -1})
+    void constructorThrowsIllegalArgumentExceptionIfMaxBytesIsNotPositive(
+            long maxBytes) {
+        assertThrows(IllegalArgumentException.class, () ->
+                new ResourceCache(unpacker, maxBytes));
+    }
+
+    @Test
+    void getResourceDataReturnsResourceData() throws IOException {
+        val data = resourceCache.getResourceData(getResource("second"));
+
+        assertEquals(ByteBuffer.wrap(new byte[]{5, 6, 7, 8}), data);
+        assertTrue(data.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> data.put(0,
+                (byte) 0));
+    }
+
+    @Test
+    void getResourceDataCountsHitsAndMisses() throws IOException {
+        val first = resourceCache.getResourceData(getResource("first"));
+        first.get();
+
+        val second = resourceCache.getResourceData(getResource("first"));
+
+        assertEquals(0, second.position());
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), second);
+        assertEquals(1, resourceCache.getHitCount());
+        assertEquals(1, resourceCache.getMissCount());
+        assertEquals(4, resourceCache.getCachedBytes());
+    }
+
+    @Test
+    void getResourceDataEvictsLeastRecentlyUsedPayloads()
+            throws IOException {
+        resourceCache.getResourceData(getResource("first"));
+        resourceCache.getResourceData(getResource("second"));
+        resourceCache.getResourceData(getResource("first"));
+        resourceCache.getResourceData(getResource("third"));
+
+        assertEquals(1, resourceCache.getEvictionCount());
+        assertEquals(8, resourceCache.getCachedBytes());
+
+        resourceCache.getResourceData(getResource("first"));
+
+        assertEquals(2, resourceCache.getHitCount());
+
+        resourceCache.getResourceData(getResource("second"));
+
+        assertEquals(4, resourceCache.getMissCount());
+    }
+
+    @Test
+    void getResourceDataDoesNotCachePayloadsLargerThanBudget()
+            throws IOException {
+        resourceCache.getResourceData(getResource("first"));
+
+        val data = resourceCache.getResourceData(getResource("large"));
+
+        assertEquals(16, data.remaining());
+        assertEquals(4, resourceCache.getCachedBytes());
+        assertEquals(0, resourceCache.getEvictionCount());
+    }
+
+    @Test
+    void unpackResourceWritesResourceData() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            val outputStream = new ByteArrayOutputStream();
+
+            resourceCache.unpackResource(getResource("third"),
+                    Channels.newChannel(outputStream));
+
+            assertArrayEquals(new byte[]{9, 10, 11, 12},
+                    outputStream.toByteArray());
+        }
+
+        assertEquals(1, resourceCache.getHitCount());
+    }
+
+    @Test
+    void clearEvictsAllPayloads() throws IOException {
+        resourceCache.getResourceData(getResource("first"));
+        resourceCache.getResourceData(getResource("second"));
+
+        resourceCache.clear();
+
+        assertEquals(0, resourceCache.getCachedBytes());
+        assertEquals(2, resourceCache.getEvictionCount());
+
+        resourceCache.getResourceData(getResource("first"));
+
+        assertEquals(3, resourceCache.getMissCount());
+    }
+
+    private Resource getResource(String name) throws IOException {
+        return unpacker.findResource(name);
+    }
+}
@@ -0,0 +1,247 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import com.artyommameev.psfsv1unpacker.domain.Resource;
+import lombok.val;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("ConstantConditions")
+public class ResourceTableTests {
+
+    private ResourceTable resourceTable;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        val testResourceUrl = getClass().getClassLoader()
+                .getResource("test.dat");
+
+        try (val unpacker = new PsFsV1Unpacker(
+                new File(testResourceUrl.getPath()))) {
+            resourceTable = unpacker.getResourceTable();
+        }
+    }
+
+    @Test
+    void accessorsReturnColumnValues() {
+        assertEquals(2, resourceTable.size());
+
+        assertEquals("testfile.test", resourceTable.getName(0));
+        assertEquals(8, resourceTable.getSize(0));
+        assertEquals(240, resourceTable.getOffset(0));
+
+        assertEquals("testfile2.test", resourceTable.getName(1));
+        assertEquals(8, resourceTable.getSize(1));
+        assertEquals(272, resourceTable.getOffset(1));
+    }
+
+    @Test
+    void accessorsThrowIndexOutOfBoundsExceptionIfIndexIsOutOfRange() {
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                resourceTable.getName(2));
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                resourceTable.getSize(-1));
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                resourceTable.getOffset(2));
+        assertThrows(IndexOutOfBoundsException.class, () ->
+                resourceTable.get(2));
+    }
+
+    @Test
+    void asListCreatesResourcesOnAccess() {
+        val resources = resourceTable.asList();
+
+        assertEquals(List.of(new Resource("testfile.test", 8, 240),
+                new Resource("testfile2.test", 8, 272)), resources);
+    }
+
+    @Test
+    void asListIsUnmodifiable() {
+        val resources = resourceTable.asList();
+
+        assertThrows(UnsupportedOperationException.class, () ->
+                resources.add(new Resource("test", 1, 2)));
+        assertThrows(UnsupportedOperationException.class, () ->
+                resources.remove(0));
+    }
+
+    @Test
+    void namesAreTrimmedLikeStrings(@TempDir Path tempDir)
+            throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+        payloads.put(" padded name\t", new byte[1]);
+        payloads.put("имя.bin", new byte[2]);
+        payloads.put("inner\u0000zero", new byte[3]);
+
+        val archive = tempDir.resolve("names.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val table = unpacker.getResourceTable();
+
+            int i = 0;
+
+            for (val name : payloads.keySet()) {
+                assertEquals(name.trim(), table.getName(i++));
+            }
+        }
+    }
+
+    @Test
+    void indexOfFindsNamesWithTruncatedMultibyteCharacters(
+            @TempDir Path tempDir) throws IOException {
+        // the name field cuts the two-byte character after its first byte
+        val truncatedName = "a".repeat(PsFsV1Index.NAME_SIZE - 1) + "é";
+
+        val payloads = new LinkedHashMap<String, byte[]>();
+        payloads.put(truncatedName, new byte[1]);
+        payloads.put("имя.bin", new byte[2]);
+
+        val archive = tempDir.resolve("truncated.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val table = unpacker.getResourceTable();
+            val name = table.getName(0);
+
+            assertEquals("a".repeat(PsFsV1Index.NAME_SIZE - 1) + "\uFFFD",
+                    name);
+            assertEquals(0, table.indexOf(name));
+            assertEquals(1, table.indexOf("имя.bin"));
+            assertNotNull(unpacker.findResource(name));
+        }
+    }
+
+    @Test
+    void decodeThrowsIllegalArgumentExceptionIfEntryIsInvalid(
+            @TempDir Path tempDir) throws IOException {
+        val archive = tempDir.resolve("empty.dat").toFile();
+        TestArchives.write(archive, Map.of("name", new byte[0]));
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            assertThrows(IllegalArgumentException.class,
+                    unpacker::getResourceTable);
+        }
+    }
+
+    @Test
+    void indexOfFindsResourcesByName() {
+        assertEquals(0, resourceTable.indexOf("testfile.test"));
+        assertEquals(1, resourceTable.indexOf("testfile2.test"));
+    }
+
+    @Test
+    void indexOfReturnsMinusOneIfNameIsAbsent() {
+        assertEquals(-1, resourceTable.indexOf("testfile3.test"));
+        assertEquals(-1, resourceTable.indexOf("testfile"));
+        assertEquals(-1, resourceTable.indexOf("testfile.test2"));
+        assertEquals(-1, resourceTable.indexOf(""));
+    }
+
+    @Test
+    void indexOfFindsAllNamesOfLargeTable(@TempDir Path tempDir)
+            throws IOException {
+        val payloads = new LinkedHashMap<String, byte[]>();
+
+        for (int i = 0; i < 5000; i++) {
+            payloads.put("file" + i + (i % 3 == 0 ? "_имя" : "") +
+                    (i % 7 == 0 ? "_\uD83D\uDE00" : ""), new byte[1]);
+        }
+
+        payloads.put("duplicate", new byte[1]);
+
+        val archive = tempDir.resolve("large.dat").toFile();
+        TestArchives.write(archive, payloads);
+
+        try (val unpacker = new PsFsV1Unpacker(archive)) {
+            val table = unpacker.getResourceTable();
+
+            int i = 0;
+
+            for (val name : payloads.keySet()) {
+                assertEquals(i++, table.indexOf(name), name);
+            }
+
+            assertEquals(-1, table.indexOf("file5000"));
+        }
+    }
+
+    @Test
+    void indexOfReturnsFirstResourceWithDuplicateName() {
+        val table = new ResourceTable(new int[]{1, 2}, new int[]{16, 32},
+                new int[]{0, 4, 8}, "samesame".getBytes(
+                StandardCharsets.UTF_8));
+
+        assertEquals(0, table.indexOf("same"));
+    }
+
+    @Test
+    void readFromReadsWrittenTable() {
+        val table = ResourceTable.readFrom(serialize(resourceTable));
+
+        assertEquals(resourceTable.asList(), table.asList());
+        assertEquals(1, table.indexOf("testfile2.test"));
+        assertEquals(-1, table.indexOf("missing"));
+    }
+
+    @Test
+    void readFromThrowsIllegalArgumentExceptionIfNoSlotIsFree() {
+        val buffer = serialize(resourceTable);
+        int slotsPosition = 3 * Integer.BYTES +
+                (3 * resourceTable.size() + 1) * Integer.BYTES;
+        int slotCount = buffer.getInt(Integer.BYTES);
+
+        for (int i = 0; i < slotCount; i++) {
+            buffer.putInt(slotsPosition + i * Integer.BYTES, 1);
+        }
+
+        assertThrows(IllegalArgumentException.class, () ->
+                ResourceTable.readFrom(buffer));
+    }
+
+    @Test
+    void readFromThrowsIllegalArgumentExceptionIfValueIsOutOfRange() {
+        int sizesPosition = 3 * Integer.BYTES;
+        int offsetsPosition = sizesPosition +
+                resourceTable.size() * Integer.BYTES;
+        int nameOffsetsPosition = offsetsPosition +
+                resourceTable.size() * Integer.BYTES;
+
+        for (val position : new int[]{sizesPosition, offsetsPosition,
+                nameOffsetsPosition + Integer.BYTES}) {
+            val buffer = serialize(resourceTable);
+
+            buffer.putInt(position, -1);
+
+            assertThrows(IllegalArgumentException.class, () ->
+                    ResourceTable.readFrom(buffer));
+        }
+    }
+
+    @Test
+    void indexOfThrowsNullPointerExceptionIfNameIsNull() {
+        assertThrows(NullPointerException.class, () ->
+                resourceTable.indexOf(null));
+    }
+
+    private static ByteBuffer serialize(ResourceTable table) {
+        val buffer = ByteBuffer.allocate((int) table.getSerializedSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        table.writeTo(buffer);
+
+        return buffer.flip();
+    }
+}
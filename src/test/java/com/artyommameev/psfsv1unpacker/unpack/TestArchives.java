@@ -0,0 +1,55 @@
+package com.artyommameev.psfsv1unpacker.unpack;
+
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * Writes 'PS_FS_V1' archives for tests.
+ */
+final class TestArchives {
+
+    private TestArchives() {
+    }
+
+    static void write(File archive, Map<String, byte[]> payloads)
+            throws IOException {
+        int dataOffset = 16 + 64 * payloads.size();
+        int archiveSize = dataOffset + payloads.values().stream()
+                .mapToInt(payload -> 16 + payload.length)
+                .sum();
+
+        val buffer = ByteBuffer.allocate(archiveSize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put("PS_FS_V1".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(payloads.size());
+        buffer.putInt(0);
+
+        int entryPosition = 16;
+
+        for (val entry : payloads.entrySet()) {
+            buffer.position(entryPosition);
+            buffer.put(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            buffer.position(entryPosition + 48);
+            buffer.putInt(entry.getValue().length + 16);
+            buffer.putInt(0);
+            buffer.putInt(dataOffset);
+            buffer.putInt(0);
+
+            buffer.position(dataOffset + 16);
+            buffer.put(entry.getValue());
+
+            entryPosition += 64;
+            dataOffset += 16 + entry.getValue().length;
+        }
+
+        Files.write(archive.toPath(), buffer.array());
+    }
+}